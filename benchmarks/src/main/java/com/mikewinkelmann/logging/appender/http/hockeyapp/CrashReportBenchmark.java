@@ -0,0 +1,63 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import com.mikewinkelmann.logging.appender.http.exception.HttpAppenderException;
+import com.mikewinkelmann.logging.benchmark.BenchmarkEvents;
+import org.apache.http.entity.mime.content.ContentBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the HockeyApp crash and description parts for different stack depths.
+ * Lives in the appender package because the service is package private.
+ *
+ * @author Mike Winkelmann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrashReportBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int stackDepth;
+
+    private HockeyAppCrashAppenderService service;
+    private IThrowableProxy throwableProxy;
+    private long timeStamp;
+
+    @Setup
+    public void setUp() {
+        this.service = new HockeyAppCrashAppenderService("model", "manufacturer", "os", "1.0", "com.mikewinkelmann.benchmark",
+                HockeyAppCrashAppenderConfig.DEFAULT_FRAME_CACHE_SIZE);
+        ThrowableProxy proxy = new ThrowableProxy(BenchmarkEvents.throwable(this.stackDepth));
+        proxy.calculatePackagingData();
+        this.throwableProxy = proxy;
+        this.timeStamp = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public ContentBody createCrashFileBody() throws HttpAppenderException {
+        return this.service.createCrashFileBody(this.throwableProxy, this.timeStamp);
+    }
+
+    @Benchmark
+    public ContentBody createDescriptionFileBody() throws HttpAppenderException {
+        return this.service.createDescriptionFileBody("Benchmark failure with depth " + this.stackDepth, this.timeStamp);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.mikewinkelmann.logging.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of {@code append()} for every queue implementation. The producer thread count is set
+ * on the command line, e.g. {@code -t 1}, {@code -t 16} or {@code -t 64}.
+ *
+ * @author Mike Winkelmann
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppendBenchmark {
+
+    @Param({"ARRAY", "RING_BUFFER", "PERSISTENT"})
+    public String queueType;
+
+    @Param({"1024"})
+    public int queueSize;
+
+    private NoopHttpAppender appender;
+    private File persistenceDirectory;
+    private ILoggingEvent event;
+
+    @Setup
+    public void setUp() {
+        this.appender = new NoopHttpAppender();
+        this.appender.addLoggingLevel("ERROR");
+        this.appender.setQueueType(this.queueType);
+        this.appender.setQueueSize(this.queueSize);
+        this.appender.setDropReportIntervalMs(0);
+        if ("PERSISTENT".equals(this.queueType)) {
+            this.persistenceDirectory = new File(System.getProperty("java.io.tmpdir"),
+                    "append-benchmark-" + System.nanoTime());
+            this.appender.setPersistenceDirectory(this.persistenceDirectory.getAbsolutePath());
+        }
+        BenchmarkEvents.start(this.appender);
+        this.event = BenchmarkEvents.event(Level.ERROR, "Benchmark message", null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkEvents.stop(this.appender);
+        if (this.persistenceDirectory != null)
+            delete(this.persistenceDirectory);
+    }
+
+    @Benchmark
+    public void append() {
+        this.appender.doAppend(this.event);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.mikewinkelmann.logging.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.mikewinkelmann.logging.appender.http.AbstractHttpAppender;
+
+/**
+ * Creates logging events and started appenders for the benchmarks.
+ *
+ * @author Mike Winkelmann
+ */
+public final class BenchmarkEvents {
+
+    private static final LoggerContext CONTEXT = new LoggerContext();
+    private static final Logger LOGGER = CONTEXT.getLogger("com.mikewinkelmann.logging.benchmark.Service");
+
+    private BenchmarkEvents() {
+    }
+
+    public static ILoggingEvent event(Level level, String message, Throwable throwable) {
+        return new LoggingEvent(BenchmarkEvents.class.getName(), LOGGER, level, message, throwable, null);
+    }
+
+    /**
+     * @return a throwable whose stack trace has exactly the given depth
+     */
+    public static Throwable throwable(int stackDepth) {
+        StackTraceElement[] stackTrace = new StackTraceElement[stackDepth];
+        for (int i = 0; i < stackDepth; i++) {
+            stackTrace[i] = new StackTraceElement("com.mikewinkelmann.logging.benchmark.Frame" + (i % 17),
+                    "call" + i, "Frame" + (i % 17) + ".java", 100 + i);
+        }
+        IllegalStateException throwable = new IllegalStateException("Benchmark failure with depth " + stackDepth);
+        throwable.setStackTrace(stackTrace);
+        return throwable;
+    }
+
+    public static <T extends AbstractHttpAppender> T start(T appender) {
+        LoggerContext context = new LoggerContext();
+        appender.setContext(context);
+        appender.setName(appender.getClass().getSimpleName());
+        appender.start();
+        return appender;
+    }
+
+    public static void stop(AbstractHttpAppender appender) {
+        appender.stop();
+        appender.getContext().getExecutorService().shutdownNow();
+    }
+
+}
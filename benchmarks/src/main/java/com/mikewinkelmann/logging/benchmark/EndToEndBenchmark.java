@@ -0,0 +1,82 @@
+package com.mikewinkelmann.logging.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.mikewinkelmann.logging.appender.http.DefaultHttpGetAppender;
+import com.mikewinkelmann.logging.appender.http.StubHttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivered events per second from {@code append()} to a local {@link StubHttpServer}.
+ * One invocation appends {@link #EVENTS} events and waits until the server has received all of them.
+ *
+ * @author Mike Winkelmann
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    static final int EVENTS = 1000;
+
+    @Param({"BLOCKING", "ASYNC"})
+    public String httpEngine;
+
+    @Param({"1", "4"})
+    public int workerCount;
+
+    private StubHttpServer server;
+    private DefaultHttpGetAppender appender;
+    private ILoggingEvent event;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.server = new StubHttpServer(8);
+        this.appender = new DefaultHttpGetAppender();
+        this.appender.setRequestUrl(this.server.getUrl("/collector"));
+        this.appender.addLoggingLevel("ERROR");
+        this.appender.setHttpEngine(this.httpEngine);
+        this.appender.setWorkerCount(this.workerCount);
+        this.appender.setQueueSize(EVENTS);
+        this.appender.setOverflowPolicy("BLOCK");
+        this.appender.setOverflowTimeoutMs(TimeUnit.SECONDS.toMillis(10));
+        BenchmarkEvents.start(this.appender);
+        this.event = BenchmarkEvents.event(Level.ERROR, "Benchmark message", null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkEvents.stop(this.appender);
+        this.server.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long deliver() throws InterruptedException {
+        long expected = this.server.getRequests() + EVENTS;
+        for (int i = 0; i < EVENTS; i++)
+            this.appender.doAppend(this.event);
+        while (this.server.getRequests() < expected)
+            Thread.sleep(1);
+        return expected;
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.mikewinkelmann.logging.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.joran.util.PropertySetter;
+import ch.qos.logback.core.util.AggregationType;
+import ch.qos.logback.core.util.StatusPrinter;
+import com.mikewinkelmann.logging.appender.http.AbstractHttpAppender;
+import com.mikewinkelmann.logging.appender.http.StubHttpServer;
+import com.mikewinkelmann.logging.appender.http.hockeyapp.HockeyAppCrashAppender;
+import com.mikewinkelmann.logging.appender.http.hockeyapp.HockeyAppCrashAppenderConfig;
+import com.mikewinkelmann.logging.appender.http.json.JsonHttpPostAppender;
+import com.mikewinkelmann.logging.appender.http.metrics.AppenderMetrics;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives an appender at a fixed event rate against a {@link StubHttpServer} and reports the sustained throughput,
+ * the latency from the append to the acknowledgement by the server and the loss. Unlike the JMH benchmarks the
+ * offered load does not slow down when delivery does, so it reproduces how an appender saturates.
+ * <p>
+ * Every event carries its number in the message, the server acknowledges the numbers of every successful request.
+ * The latency of an event starts at its scheduled append time, so time the logging thread was blocked counts too.
+ * Settings are read from system properties:
+ * <ul>
+ * <li>{@code load.appender} JSON for the {@link JsonHttpPostAppender} or HOCKEYAPP for the
+ * {@link HockeyAppCrashAppender} against a simulated crash upload api - default: JSON</li>
+ * <li>{@code load.rate} offered events per second - default: 1000</li>
+ * <li>{@code load.durationSeconds} time the events are offered - default: 30</li>
+ * <li>{@code load.warmupSeconds} time offered before, its events are not measured - default: 5</li>
+ * <li>{@code load.level} level of the events - default: ERROR</li>
+ * <li>{@code load.stackDepth} stack depth of the crashes with HOCKEYAPP - default: 50</li>
+ * <li>{@code load.serverThreads} threads of the stub server - default: 8</li>
+ * <li>{@code load.latencyMs}, {@code load.errorRate}, {@code load.errorStatusCode}, {@code load.retryAfterSeconds}
+ * and {@code load.readBytesPerSecond} the behavior of the {@link StubHttpServer}</li>
+ * <li>{@code appender.<property>} any appender property, set like in logback.xml,
+ * e.g. {@code -Dappender.maxBatchSize=100}</li>
+ * </ul>
+ *
+ * @author Mike Winkelmann
+ */
+public final class LoadGenerator {
+
+    private static final String LOAD_PREFIX = "load.";
+    private static final String APPENDER_PREFIX = "appender.";
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final double rate = Double.parseDouble(property("rate", "1000"));
+        final long durationSeconds = Long.parseLong(property("durationSeconds", "30"));
+        final long warmupSeconds = Long.parseLong(property("warmupSeconds", "5"));
+        final int warmupEvents = (int) Math.min(Integer.MAX_VALUE / 2, Math.round(rate * warmupSeconds));
+        final int events = warmupEvents
+                + (int) Math.min(Integer.MAX_VALUE / 2, Math.round(rate * durationSeconds));
+        final double periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        final Level level = Level.toLevel(property("level", "ERROR"), Level.ERROR);
+
+        final boolean hockeyAppTarget = "HOCKEYAPP".equalsIgnoreCase(property("appender", "JSON"));
+        Throwable throwable = null;
+        AbstractHttpAppender appender;
+        if (hockeyAppTarget) {
+            HockeyAppCrashAppender hockeyApp = new HockeyAppCrashAppender();
+            hockeyApp.setAppId("load-generator");
+            hockeyApp.setApiToken("load-generator");
+            hockeyApp.setPackageName("com.mikewinkelmann.benchmark");
+            throwable = BenchmarkEvents.throwable(Integer.parseInt(property("stackDepth", "50")));
+            appender = hockeyApp;
+        } else {
+            appender = new JsonHttpPostAppender();
+        }
+        appender.addLoggingLevel(level.levelStr);
+        // before the server starts, so an unknown property does not leave its threads running
+        configure(appender);
+
+        StubHttpServer server = new StubHttpServer(Integer.parseInt(property("serverThreads", "8")));
+        server.setLatencyMs(Long.parseLong(property("latencyMs", "0")));
+        server.setErrorRate(Double.parseDouble(property("errorRate", "0")));
+        server.setErrorStatusCode(Integer.parseInt(property("errorStatusCode", "503")));
+        server.setRetryAfterSeconds(Long.parseLong(property("retryAfterSeconds", "0")));
+        server.setReadBytesPerSecond(Long.parseLong(property("readBytesPerSecond", "0")));
+
+        // acknowledgement time of every event relative to origin, 0 while not acknowledged
+        final AtomicLongArray acks = new AtomicLongArray(events);
+        final long origin = System.nanoTime();
+        server.setAckListener(new StubHttpServer.AckListener() {
+            @Override
+            public void acknowledged(String uri, String contentType, byte[] body) {
+                long ack = System.nanoTime() - origin;
+                for (int i = 0; i < body.length; i++) {
+                    if (body[i] != '#')
+                        continue;
+                    long id = 0;
+                    int digits = 0;
+                    for (i++; i < body.length && body[i] >= '0' && body[i] <= '9'; i++, digits++)
+                        id = id * 10 + body[i] - '0';
+                    // a retried request acknowledges its events again, the first acknowledgement counts
+                    if (digits > 0 && i < body.length && body[i] == ';' && id < events)
+                        acks.compareAndSet((int) id, 0, ack);
+                }
+            }
+        });
+
+        if (hockeyAppTarget) {
+            String apiUrl = HockeyAppCrashAppenderConfig.HOCKEYAPP_CRASH_API_URL;
+            appender.setRequestUrl(server.getUrl(apiUrl.substring(apiUrl.indexOf('/', "https://".length()))));
+            server.setSuccessStatusCode(201);
+        } else {
+            appender.setRequestUrl(server.getUrl("/collector"));
+        }
+        BenchmarkEvents.start(appender);
+
+        AppenderMetrics metrics = appender.getMetrics();
+        final long measureStart = (long) (warmupEvents * periodNanos);
+        long droppedBefore = 0, sampledOutBefore = 0, requestsBefore = 0, retriesBefore = 0, failedBefore = 0;
+        for (int id = 0; id < events; id++) {
+            if (id == warmupEvents) {
+                droppedBefore = metrics.getDroppedEventsTotal();
+                sampledOutBefore = metrics.getSampledOutEvents();
+                requestsBefore = metrics.getRequests();
+                retriesBefore = metrics.getRetries();
+                failedBefore = metrics.getFailedRequests();
+            }
+            long wait = origin + (long) (id * periodNanos) - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            appender.doAppend(BenchmarkEvents.event(level, "Load event #" + id + ";", throwable));
+        }
+        long appended = System.nanoTime() - origin - measureStart;
+        // drains the queues for up to shutdownTimeoutMs
+        BenchmarkEvents.stop(appender);
+        server.stop();
+
+        final int measured = events - warmupEvents;
+        long[] latencies = new long[measured];
+        int acknowledged = 0;
+        long lastAck = 0;
+        for (int id = warmupEvents; id < events; id++) {
+            long ack = acks.get(id);
+            if (ack == 0)
+                continue;
+            latencies[acknowledged++] = ack - (long) (id * periodNanos);
+            lastAck = Math.max(lastAck, ack);
+        }
+        Arrays.sort(latencies, 0, acknowledged);
+
+        long lost = measured - acknowledged;
+        print("offered", "%d events in %d s after %d s warmup, %.1f events/s", measured, durationSeconds,
+                warmupSeconds, rate);
+        print("appended", "%.1f events/s", measured / seconds(appended));
+        print("sustained", "%.1f events/s acknowledged",
+                lastAck > measureStart ? acknowledged / seconds(lastAck - measureStart) : 0.0);
+        print("latency ms", "p50 %.2f, p99 %.2f, p99.9 %.2f, max %.2f", percentile(latencies, acknowledged, 50),
+                percentile(latencies, acknowledged, 99), percentile(latencies, acknowledged, 99.9),
+                percentile(latencies, acknowledged, 100));
+        print("lost", "%d events (%.2f %%), %d dropped, %d sampled out", lost, 100.0 * lost / Math.max(1, measured),
+                metrics.getDroppedEventsTotal() - droppedBefore, metrics.getSampledOutEvents() - sampledOutBefore);
+        print("requests", "%d sent, %d retried, %d given up", metrics.getRequests() - requestsBefore,
+                metrics.getRetries() - retriesBefore, metrics.getFailedRequests() - failedBefore);
+        print("server", "%d requests, %d failed responses, %d bytes received in total", server.getRequests(),
+                server.getFailedResponses(), server.getBytesReceived());
+    }
+
+    /**
+     * Sets every {@code appender.<property>} system property like Joran sets the elements of logback.xml,
+     * so {@code add} methods like {@code addLoggingLevel} can be used as well.
+     */
+    private static void configure(AbstractHttpAppender appender) {
+        LoggerContext context = new LoggerContext();
+        PropertySetter setter = new PropertySetter(appender);
+        setter.setContext(context);
+        for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+            String key = property.getKey().toString();
+            if (!key.startsWith(APPENDER_PREFIX))
+                continue;
+            String name = key.substring(APPENDER_PREFIX.length());
+            String value = property.getValue().toString();
+            AggregationType aggregationType = setter.computeAggregationType(name);
+            if (aggregationType == AggregationType.AS_BASIC_PROPERTY)
+                setter.setProperty(name, value);
+            else if (aggregationType == AggregationType.AS_BASIC_PROPERTY_COLLECTION)
+                setter.addBasicProperty(name, value);
+            else
+                throw new IllegalArgumentException("Unknown appender property " + name);
+        }
+        StatusPrinter.printIfErrorsOccured(context);
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(LOAD_PREFIX + name, defaultValue);
+    }
+
+    /**
+     * @return the latency in milliseconds below which the given percentage of the sorted latencies lies
+     */
+    private static double percentile(long[] sortedNanos, int count, double percentile) {
+        if (count == 0)
+            return 0;
+        int index = (int) Math.max(0, Math.ceil(percentile / 100 * count) - 1);
+        return sortedNanos[Math.min(index, count - 1)] / 1e6;
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static void print(String name, String format, Object... args) {
+        System.out.println(String.format(Locale.ROOT, "%-12s", name) + String.format(Locale.ROOT, format, args));
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.mikewinkelmann.logging.benchmark;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.mikewinkelmann.logging.appender.http.AbstractHttpAppender;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appender which consumes its queue without sending anything, so only {@code append()} and queueing are measured.
+ *
+ * @author Mike Winkelmann
+ */
+public class NoopHttpAppender extends AbstractHttpAppender {
+
+    private final AtomicLong consumed = new AtomicLong();
+
+    public NoopHttpAppender() {
+        this.setRequestUrl("http://localhost/noop");
+    }
+
+    @Override
+    public HttpRequestBase createHttpRequest(ILoggingEvent event) {
+        this.consumed.incrementAndGet();
+        return null;
+    }
+
+    public long getConsumed() {
+        return this.consumed.get();
+    }
+
+}
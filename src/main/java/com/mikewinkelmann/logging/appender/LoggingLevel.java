@@ -1,5 +1,7 @@
 package com.mikewinkelmann.logging.appender;
 
+import ch.qos.logback.classic.Level;
+
 /**
  * Enum for all supported logging levels.
  *
@@ -7,6 +9,24 @@ package com.mikewinkelmann.logging.appender;
  */
 public enum LoggingLevel {
 
-    ERROR, WARN, INFO, DEBUG, TRACE
+    ERROR, WARN, INFO, DEBUG, TRACE;
+
+    /**
+     * @return the logging level matching the logback level, TRACE for ALL and unknown levels
+     */
+    public static LoggingLevel of(Level level) {
+        switch (level.levelInt) {
+            case Level.ERROR_INT:
+                return ERROR;
+            case Level.WARN_INT:
+                return WARN;
+            case Level.INFO_INT:
+                return INFO;
+            case Level.DEBUG_INT:
+                return DEBUG;
+            default:
+                return TRACE;
+        }
+    }
 
 }
@@ -0,0 +1,28 @@
+package com.mikewinkelmann.logging.appender.filter;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.AbstractMatcherFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Matches events whose logger name starts with one of the configured package or class prefixes.
+ * The prefixes are kept in a trie, so the check takes one pass over the logger name regardless of their number.
+ *
+ * @author Mike Winkelmann
+ */
+public class LoggerPrefixFilter extends AbstractMatcherFilter<ILoggingEvent> {
+
+    private final PrefixTrie prefixes = new PrefixTrie();
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (!this.isStarted())
+            return FilterReply.NEUTRAL;
+        return this.prefixes.matches(event.getLoggerName()) ? this.onMatch : this.onMismatch;
+    }
+
+    public void addPrefix(String prefix) {
+        this.prefixes.add(prefix.trim());
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.mikewinkelmann.logging.appender.filter;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.AbstractMatcherFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches events carrying one of the configured markers, directly or as reference of their marker.
+ *
+ * @author Mike Winkelmann
+ */
+public class MarkerMatchFilter extends AbstractMatcherFilter<ILoggingEvent> {
+
+    private final List<String> markerNames = new ArrayList<String>();
+    private String[] markers = new String[0];
+
+    @Override
+    public void start() {
+        this.markers = this.markerNames.toArray(new String[this.markerNames.size()]);
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (!this.isStarted())
+            return FilterReply.NEUTRAL;
+        Marker marker = event.getMarker();
+        if (marker != null) {
+            for (String name : this.markers) {
+                if (marker.contains(name))
+                    return this.onMatch;
+            }
+        }
+        return this.onMismatch;
+    }
+
+    public void addMarker(String marker) {
+        this.markerNames.add(marker.trim());
+    }
+
+}
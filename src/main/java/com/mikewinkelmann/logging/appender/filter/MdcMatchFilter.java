@@ -0,0 +1,46 @@
+package com.mikewinkelmann.logging.appender.filter;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.AbstractMatcherFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+import java.util.Map;
+
+/**
+ * Matches events whose MDC contains the configured key, and if a value is configured, maps it to this value.
+ *
+ * @author Mike Winkelmann
+ */
+public class MdcMatchFilter extends AbstractMatcherFilter<ILoggingEvent> {
+
+    private String key;
+    private String value;
+
+    @Override
+    public void start() {
+        if (this.key == null) {
+            this.addError("The key property must be set for filter " + this.getName());
+            return;
+        }
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (!this.isStarted())
+            return FilterReply.NEUTRAL;
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        String mdcValue = mdc != null ? mdc.get(this.key) : null;
+        boolean matches = this.value == null ? mdcValue != null : this.value.equals(mdcValue);
+        return matches ? this.onMatch : this.onMismatch;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.mikewinkelmann.logging.appender.filter;
+
+import java.util.Arrays;
+
+/**
+ * Character trie of logger name prefixes. A prefix matches a logger name if it equals the name or is followed
+ * by a dot in it, so {@code com.foo} matches {@code com.foo.Bar} but not {@code com.foobar}. A prefix ending with
+ * a dot, like {@code com.foo.}, matches every name continuing after it.
+ * Matching walks the name once and does not allocate. Not thread-safe while prefixes are added.
+ *
+ * @author Mike Winkelmann
+ */
+final class PrefixTrie {
+
+    private final Node root = new Node();
+
+    void add(String prefix) {
+        Node node = this.root;
+        for (int i = 0; i < prefix.length(); i++)
+            node = node.getOrAddChild(prefix.charAt(i));
+        node.terminal = true;
+    }
+
+    boolean matches(String name) {
+        Node node = this.root;
+        if (node.terminal)
+            return true;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.child(name.charAt(i));
+            if (node == null)
+                return false;
+            if (node.terminal && (i + 1 == name.length() || name.charAt(i + 1) == '.' || name.charAt(i) == '.'))
+                return true;
+        }
+        return false;
+    }
+
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(this.keys, key);
+            return index >= 0 ? this.children[index] : null;
+        }
+
+        private Node getOrAddChild(char key) {
+            int index = Arrays.binarySearch(this.keys, key);
+            if (index >= 0)
+                return this.children[index];
+            int insertAt = -index - 1;
+            char[] keys = new char[this.keys.length + 1];
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, insertAt);
+            System.arraycopy(this.children, 0, children, 0, insertAt);
+            System.arraycopy(this.keys, insertAt, keys, insertAt + 1, this.keys.length - insertAt);
+            System.arraycopy(this.children, insertAt, children, insertAt + 1, this.children.length - insertAt);
+            keys[insertAt] = key;
+            children[insertAt] = new Node();
+            this.keys = keys;
+            this.children = children;
+            return children[insertAt];
+        }
+
+    }
+
+}
@@ -2,25 +2,56 @@ package com.mikewinkelmann.logging.appender.http;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import ch.qos.logback.core.util.CloseUtil;
 import com.google.common.base.Preconditions;
 import com.mikewinkelmann.logging.appender.LoggingLevel;
+import com.mikewinkelmann.logging.appender.http.event.LoggingEventSnapshot;
 import com.mikewinkelmann.logging.appender.http.exception.HttpAppenderException;
+import com.mikewinkelmann.logging.appender.http.exception.HttpStatusException;
+import com.mikewinkelmann.logging.appender.http.metrics.AppenderMetrics;
+import com.mikewinkelmann.logging.appender.http.metrics.JmxMetricsRegistry;
+import com.mikewinkelmann.logging.appender.http.metrics.MetricsRegistry;
+import com.mikewinkelmann.logging.appender.http.queue.FsyncPolicy;
+import com.mikewinkelmann.logging.appender.http.queue.PersistentEventQueue;
+import com.mikewinkelmann.logging.appender.http.queue.RingBufferQueue;
+import com.mikewinkelmann.logging.appender.http.queue.WaitStrategy;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Future;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An abstract base for module specific {@code HttpAppender}
@@ -28,49 +59,340 @@ import java.util.concurrent.SynchronousQueue;
  *
  * @author Mike Winkelmann
  */
-public abstract class AbstractHttpAppender extends AppenderBase<ILoggingEvent> implements Runnable {
+public abstract class AbstractHttpAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractHttpAppender.class);
+    private static final String WORKER_DIRECTORY_PREFIX = "worker-";
 
     private CloseableHttpClient httpClient;
-    private BlockingQueue<ILoggingEvent> queue;
-    private Future<?> task;
+    private AsyncHttpSender asyncHttpSender;
+    private VirtualThreadSender virtualThreadSender;
+    private Worker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final DroppedEventCounter droppedEvents = new DroppedEventCounter();
+    private final AppenderMetrics metrics = new AppenderMetrics();
+    private final List<MetricsRegistry> metricsRegistries = new ArrayList<MetricsRegistry>();
+    private final AtomicLong lastDropReport = new AtomicLong();
+    private final AtomicLong lastHousekeeping = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workerExecutor;
+    private Thread shutdownHook;
+    private RetryPolicy retryPolicy;
+    private CircuitBreaker circuitBreaker;
+    private RuntimeConfigurator configurator;
+    private AdaptiveSampler sampler;
 
     // configuration params (required)
     private String requestUrl = null;
 
     // configuration params (optional because defaults are set)
-    private boolean error = AbstractHttpAppenderConfig.DEFAULT_ERROR;
-    private boolean warn = AbstractHttpAppenderConfig.DEFAULT_WARN;
-    private boolean info = AbstractHttpAppenderConfig.DEFAULT_INFO;
-    private boolean debug = AbstractHttpAppenderConfig.DEFAULT_DEBUG;
-    private boolean trace = AbstractHttpAppenderConfig.DEFAULT_TRACE;
+    private int levelMask = defaultLevelMask();
     private int successStatusCodeMin = AbstractHttpAppenderConfig.DEFAULT_SUCCESS_CODE_MIN;
     private int successStatusCodeMax = AbstractHttpAppenderConfig.DEFAULT_SUCCESS_CODE_MAX;
     private int queueSize = AbstractHttpAppenderConfig.DEFAULT_QUEUE_SIZE;
+    private QueueType queueType = AbstractHttpAppenderConfig.DEFAULT_QUEUE_TYPE;
+    private WaitStrategy waitStrategy = AbstractHttpAppenderConfig.DEFAULT_WAIT_STRATEGY;
+    private OverflowPolicy overflowPolicy = AbstractHttpAppenderConfig.DEFAULT_OVERFLOW_POLICY;
+    private Level overflowLevel = AbstractHttpAppenderConfig.DEFAULT_OVERFLOW_LEVEL;
+    private long overflowTimeoutMs = AbstractHttpAppenderConfig.DEFAULT_OVERFLOW_TIMEOUT_MS;
+    private long dropReportIntervalMs = AbstractHttpAppenderConfig.DEFAULT_DROP_REPORT_INTERVAL_MS;
+    private String persistenceDirectory = null;
+    private int persistenceSegmentSize = AbstractHttpAppenderConfig.DEFAULT_PERSISTENCE_SEGMENT_SIZE;
+    private int persistenceMaxSegments = AbstractHttpAppenderConfig.DEFAULT_PERSISTENCE_MAX_SEGMENTS;
+    private FsyncPolicy fsyncPolicy = AbstractHttpAppenderConfig.DEFAULT_FSYNC_POLICY;
+    private long fsyncIntervalMs = AbstractHttpAppenderConfig.DEFAULT_FSYNC_INTERVAL_MS;
+    private int maxBatchSize = AbstractHttpAppenderConfig.DEFAULT_MAX_BATCH_SIZE;
+    private int maxBatchBytes = AbstractHttpAppenderConfig.DEFAULT_MAX_BATCH_BYTES;
+    private long lingerMs = AbstractHttpAppenderConfig.DEFAULT_LINGER_MS;
+    private HttpEngine httpEngine = AbstractHttpAppenderConfig.DEFAULT_HTTP_ENGINE;
+    private int maxInFlight = AbstractHttpAppenderConfig.DEFAULT_MAX_IN_FLIGHT;
+    private int maxConnectionsPerRoute = AbstractHttpAppenderConfig.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private int maxConnectionsTotal = AbstractHttpAppenderConfig.DEFAULT_MAX_CONNECTIONS_TOTAL;
+    private long keepAliveMs = AbstractHttpAppenderConfig.DEFAULT_KEEP_ALIVE_MS;
+    private long idleConnectionTimeoutMs = AbstractHttpAppenderConfig.DEFAULT_IDLE_CONNECTION_TIMEOUT_MS;
+    private boolean staleConnectionCheck = AbstractHttpAppenderConfig.DEFAULT_STALE_CONNECTION_CHECK;
+    private int connectTimeout = AbstractHttpAppenderConfig.HTTP_CONNECTION_TIMEOUT;
+    private int socketTimeout = AbstractHttpAppenderConfig.HTTP_SOCKET_TIMEOUT;
+    private int connectionRequestTimeout = AbstractHttpAppenderConfig.HTTP_CONNECTION_REQUEST_TIMEOUT;
+    private int workerCount = AbstractHttpAppenderConfig.DEFAULT_WORKER_COUNT;
+    private OrderingKey orderingKey = AbstractHttpAppenderConfig.DEFAULT_ORDERING_KEY;
+    private String orderingMdcKey = null;
+    private Compression compression = AbstractHttpAppenderConfig.DEFAULT_COMPRESSION;
+    private int compressionMinSize = AbstractHttpAppenderConfig.DEFAULT_COMPRESSION_MIN_SIZE;
+    private int maxRetries = AbstractHttpAppenderConfig.DEFAULT_MAX_RETRIES;
+    private long retryInitialBackoffMs = AbstractHttpAppenderConfig.DEFAULT_RETRY_INITIAL_BACKOFF_MS;
+    private long retryMaxBackoffMs = AbstractHttpAppenderConfig.DEFAULT_RETRY_MAX_BACKOFF_MS;
+    private int retryBudgetPercent = AbstractHttpAppenderConfig.DEFAULT_RETRY_BUDGET_PERCENT;
+    private String retryStatusCodes = AbstractHttpAppenderConfig.DEFAULT_RETRY_STATUS_CODES;
+    private int circuitBreakerFailureThreshold = AbstractHttpAppenderConfig.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+    private long circuitBreakerOpenMs = AbstractHttpAppenderConfig.DEFAULT_CIRCUIT_BREAKER_OPEN_MS;
+    private double rateLimit = AbstractHttpAppenderConfig.DEFAULT_RATE_LIMIT;
+    private int rateLimitBurst = AbstractHttpAppenderConfig.DEFAULT_RATE_LIMIT_BURST;
+    private boolean jmxMetrics = AbstractHttpAppenderConfig.DEFAULT_JMX_METRICS;
+    private long shutdownTimeoutMs = AbstractHttpAppenderConfig.DEFAULT_SHUTDOWN_TIMEOUT_MS;
+    private boolean shutdownHookEnabled = AbstractHttpAppenderConfig.DEFAULT_SHUTDOWN_HOOK;
+    private String reloadFile = null;
+    private long reloadIntervalMs = AbstractHttpAppenderConfig.DEFAULT_RELOAD_INTERVAL_MS;
+    private boolean jmxConfig = AbstractHttpAppenderConfig.DEFAULT_JMX_CONFIG;
+    private boolean sampling = AbstractHttpAppenderConfig.DEFAULT_SAMPLING;
+    private int samplingQueueThresholdPercent = AbstractHttpAppenderConfig.DEFAULT_SAMPLING_QUEUE_THRESHOLD_PERCENT;
+    private long samplingTargetLatencyMs = AbstractHttpAppenderConfig.DEFAULT_SAMPLING_TARGET_LATENCY_MS;
+    private double samplingMaxEventsPerSecond = AbstractHttpAppenderConfig.DEFAULT_SAMPLING_MAX_EVENTS_PER_SECOND;
+    private int samplingMaxWeight = AbstractHttpAppenderConfig.DEFAULT_SAMPLING_MAX_WEIGHT;
+    private String samplingWeightKey = AbstractHttpAppenderConfig.DEFAULT_SAMPLING_WEIGHT_KEY;
+    private final double[] levelRateLimits = new double[LoggingLevel.values().length];
+    private final int[] levelRateLimitBursts = new int[LoggingLevel.values().length];
 
     protected AbstractHttpAppender() {
+        Arrays.fill(this.levelRateLimits, RuntimeConfig.UNSET_RATE);
     }
 
     @Override
     public void start() {
         if (this.isStarted())
             return;
-        Preconditions.checkNotNull(this.requestUrl, "RequestUrl must not be null");
         Preconditions.checkArgument(this.queueSize >= 0, "Queue size must be non negative");
-        httpClient = createHttpClient();
-        queue = createQueue();
-        this.task = this.getContext().getExecutorService().submit(this);
+        Preconditions.checkArgument(this.queueType != QueueType.RING_BUFFER || this.queueSize > 0,
+                "Queue size must be positive for a ring buffer queue");
+        Preconditions.checkArgument(this.queueType != QueueType.PERSISTENT || this.persistenceDirectory != null,
+                "PersistenceDirectory must not be null for a persistent queue");
+        Preconditions.checkArgument(this.persistenceSegmentSize > 0, "Persistence segment size must be positive");
+        Preconditions.checkArgument(this.persistenceMaxSegments > 0, "Persistence max segments must be positive");
+        Preconditions.checkArgument(this.overflowPolicy != OverflowPolicy.DROP_OLDEST || this.queueType == QueueType.ARRAY,
+                "Overflow policy DROP_OLDEST requires the ARRAY queue type");
+        Preconditions.checkArgument(this.overflowTimeoutMs >= 0, "Overflow timeout ms must be non negative");
+        Preconditions.checkArgument(this.dropReportIntervalMs >= 0, "Drop report interval ms must be non negative");
+        Preconditions.checkArgument(this.maxInFlight > 0, "Max in flight must be positive");
+        Preconditions.checkArgument(this.maxConnectionsPerRoute > 0, "Max connections per route must be positive");
+        Preconditions.checkArgument(this.maxConnectionsTotal >= this.maxConnectionsPerRoute,
+                "Max connections total must not be less than max connections per route");
+        Preconditions.checkArgument(this.workerCount > 0 && this.workerCount <= AbstractHttpAppenderConfig.MAX_WORKER_COUNT,
+                "Worker count must be between 1 and " + AbstractHttpAppenderConfig.MAX_WORKER_COUNT);
+        Preconditions.checkArgument(this.orderingKey != OrderingKey.MDC || this.orderingMdcKey != null,
+                "OrderingMdcKey must not be null if the ordering key is MDC");
+        Preconditions.checkArgument(this.compressionMinSize >= 0, "Compression min size must be non negative");
+        Preconditions.checkArgument(this.maxRetries >= 0, "Max retries must be non negative");
+        Preconditions.checkArgument(this.retryInitialBackoffMs >= 0, "Retry initial backoff ms must be non negative");
+        Preconditions.checkArgument(this.retryMaxBackoffMs >= this.retryInitialBackoffMs,
+                "Retry max backoff ms must not be less than retry initial backoff ms");
+        Preconditions.checkArgument(this.retryBudgetPercent >= 0, "Retry budget percent must be non negative");
+        Preconditions.checkNotNull(this.retryStatusCodes, "RetryStatusCodes must not be null");
+        Preconditions.checkArgument(this.circuitBreakerFailureThreshold >= 0,
+                "Circuit breaker failure threshold must be non negative");
+        Preconditions.checkArgument(this.circuitBreakerOpenMs > 0, "Circuit breaker open ms must be positive");
+        this.retryPolicy = new RetryPolicy(this.maxRetries, this.retryInitialBackoffMs, this.retryMaxBackoffMs,
+                this.retryBudgetPercent, this.retryStatusCodes);
+        this.circuitBreaker = new CircuitBreaker(this.circuitBreakerFailureThreshold, this.circuitBreakerOpenMs);
+        Preconditions.checkArgument(this.shutdownTimeoutMs >= 0, "Shutdown timeout ms must be non negative");
+        Preconditions.checkArgument(this.reloadIntervalMs > 0, "Reload interval ms must be positive");
+        Preconditions.checkArgument(
+                this.samplingQueueThresholdPercent >= 0 && this.samplingQueueThresholdPercent <= 100,
+                "Sampling queue threshold percent must be between 0 and 100");
+        Preconditions.checkArgument(this.samplingTargetLatencyMs > 0, "Sampling target latency ms must be positive");
+        Preconditions.checkArgument(this.samplingMaxEventsPerSecond >= 0,
+                "Sampling max events per second must be non negative");
+        Preconditions.checkArgument(this.samplingMaxWeight >= 1, "Sampling max weight must be at least 1");
+        Preconditions.checkNotNull(this.samplingWeightKey, "SamplingWeightKey must not be null");
+        this.configurator = new RuntimeConfigurator(this.getName(), new RuntimeConfig(this.levelMask, this.requestUrl,
+                this.connectTimeout, this.socketTimeout, this.connectionRequestTimeout, this.staleConnectionCheck,
+                this.maxBatchSize, this.maxBatchBytes, this.lingerMs, this.rateLimit, this.rateLimitBurst,
+                this.levelRateLimits, this.levelRateLimitBursts, null));
+        ConfigFileWatcher watcher = null;
+        if (this.reloadFile != null) {
+            watcher = new ConfigFileWatcher(new File(this.reloadFile), this.configurator);
+            // a reload file present at start applies before the first event
+            watcher.check();
+        }
+        try {
+            this.startWorkers(watcher);
+        } catch (RuntimeException e) {
+            // e.g. a persistent queue which cannot be opened, nothing started so far is left running
+            this.release();
+            throw e;
+        }
+        if (this.shutdownHookEnabled) {
+            this.shutdownHook = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    AbstractHttpAppender.this.stop();
+                }
+            }, "http-appender-shutdown");
+            Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+        }
         super.start();
     }
 
+    /**
+     * Creates the senders and queues and starts the workers, the scheduler and the JMX registrations.
+     */
+    private void startWorkers(ConfigFileWatcher watcher) {
+        // nothing of a previous run may be released twice if this start fails
+        this.httpClient = null;
+        this.asyncHttpSender = null;
+        this.virtualThreadSender = null;
+        this.workers = null;
+        this.workerExecutor = null;
+        if (this.httpEngine == HttpEngine.VIRTUAL) {
+            this.virtualThreadSender = VirtualThreadSender.create(this.maxInFlight);
+            if (this.virtualThreadSender == null)
+                logger.warn("Appender " + this.getName() + ": virtual threads require Java 21, using the "
+                        + HttpEngine.BLOCKING + " engine");
+        }
+        // one thread for the idle connection eviction and the delayed retries of the ASYNC engine
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("http-appender-" + this.getName() + "-scheduler-"));
+        if (this.httpEngine == HttpEngine.ASYNC)
+            asyncHttpSender = new AsyncHttpSender(this.configurator.get().getRequestConfig(),
+                    new ConfigurableKeepAliveStrategy(this.keepAliveMs),
+                    this.maxConnectionsPerRoute, this.maxConnectionsTotal, this.maxInFlight, this.scheduler);
+        else
+            httpClient = createHttpClient();
+        // the workers never occupy threads of the logback executor, which other components need as well
+        this.workerExecutor = this.virtualThreadSender != null ? this.virtualThreadSender.getExecutor()
+                : Executors.newFixedThreadPool(this.workerCount,
+                new DaemonThreadFactory("http-appender-" + this.getName() + "-worker-"));
+        this.workers = new Worker[this.workerCount];
+        List<BlockingQueue<ILoggingEvent>> queues = new ArrayList<BlockingQueue<ILoggingEvent>>(this.workerCount);
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new Worker(createQueue(i));
+            this.workerExecutor.submit(this.workers[i]);
+            queues.add(this.workers[i].queue);
+        }
+        if (this.queueType == QueueType.PERSISTENT)
+            this.mergeRemovedWorkerQueues();
+        this.metrics.setQueues(queues);
+        this.sampler = this.sampling ? new AdaptiveSampler(this.getName(), queues, this.samplingQueueThresholdPercent,
+                this.samplingTargetLatencyMs, this.samplingMaxEventsPerSecond, this.samplingMaxWeight) : null;
+        this.registerMetrics();
+        if (watcher != null)
+            this.scheduler.scheduleWithFixedDelay(watcher, this.reloadIntervalMs, this.reloadIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        if (this.jmxConfig)
+            this.configurator.register(this.getContext().getName());
+    }
+
+    /**
+     * Publishes the metrics with JMX if {@code jmxMetrics} is set and with every {@link MetricsRegistry}
+     * found by the {@link ServiceLoader}.
+     */
+    private void registerMetrics() {
+        if (this.jmxMetrics)
+            this.metricsRegistries.add(new JmxMetricsRegistry());
+        try {
+            for (MetricsRegistry registry : ServiceLoader.load(MetricsRegistry.class))
+                this.metricsRegistries.add(registry);
+        } catch (ServiceConfigurationError e) {
+            logger.warn("Could not load metrics registries:", e);
+        }
+        for (MetricsRegistry registry : this.metricsRegistries)
+            registry.register(this.getContext().getName(), this.getName(), this.metrics);
+    }
+
+    /**
+     * Stops accepting events and lets the workers send the queued events and pending batches for up to
+     * {@code shutdownTimeoutMs}. Events still queued afterwards are abandoned and reported, except for
+     * a persistent queue, which keeps them for the next start. {@link ch.qos.logback.classic.LoggerContext#stop()}
+     * stops the appenders, so it drains as well.
+     */
     @Override
     public void stop() {
         if (!this.isStarted())
             return;
-        CloseUtil.closeQuietly(httpClient);
-        this.task.cancel(true);
+        // append() ignores events from now on
         super.stop();
+        this.removeShutdownHook();
+        try {
+            this.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.release();
+    }
+
+    /**
+     * Stops the threads of the appender, closes the senders and queues and unregisters the appender. Also
+     * used by a {@link #start()} which failed halfway, so any of them may be missing.
+     */
+    private void release() {
+        if (this.scheduler != null)
+            this.scheduler.shutdownNow();
+        CloseUtil.closeQuietly(virtualThreadSender);
+        CloseUtil.closeQuietly(httpClient);
+        CloseUtil.closeQuietly(asyncHttpSender);
+        // the queues have a single consumer, they are only emptied here once no worker takes events anymore
+        boolean workersStopped = this.stopWorkers();
+        DroppedEventCounter abandoned = new DroppedEventCounter();
+        for (int i = 0; this.workers != null && i < this.workers.length && this.workers[i] != null; i++) {
+            Worker worker = this.workers[i];
+            if (worker.persistentQueue != null) {
+                worker.persistentQueue.close();
+            } else if (workersStopped) {
+                for (ILoggingEvent event = worker.queue.poll(); event != null; event = worker.queue.poll()) {
+                    this.metrics.dropped(event.getLevel());
+                    abandoned.increment(event.getLevel());
+                }
+            }
+        }
+        String report = abandoned.report();
+        if (report != null)
+            logger.warn("Appender " + this.getName() + " stopped, " + report + " on shutdown");
+        if (!workersStopped)
+            logger.warn("Appender " + this.getName() + " stopped, its workers did not stop in time, events still"
+                    + " queued are not counted");
+        this.configurator.unregister();
+        for (MetricsRegistry registry : this.metricsRegistries)
+            registry.unregister(this.getContext().getName(), this.getName());
+        this.metricsRegistries.clear();
+    }
+
+    /**
+     * Interrupts the workers and waits up to {@link AbstractHttpAppenderConfig#WORKER_STOP_TIMEOUT_MS} until they
+     * exited.
+     *
+     * @return false if a worker may still be running
+     */
+    private boolean stopWorkers() {
+        if (this.workerExecutor == null)
+            return true;
+        this.workerExecutor.shutdownNow();
+        try {
+            return this.workerExecutor.awaitTermination(AbstractHttpAppenderConfig.WORKER_STOP_TIMEOUT_MS,
+                    TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits until every worker has emptied its queue, and for the ASYNC and VIRTUAL engines until the last
+     * response arrived.
+     */
+    private void drain() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + this.shutdownTimeoutMs;
+        for (Worker worker : this.workers)
+            worker.draining = true;
+        for (Worker worker : this.workers) {
+            if (!worker.finished.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS))
+                return;
+        }
+        if (this.asyncHttpSender != null
+                && !this.asyncHttpSender.awaitIdle(Math.max(0, deadline - System.currentTimeMillis())))
+            logger.warn("Appender " + this.getName() + " stopped with requests in flight");
+        if (this.virtualThreadSender != null
+                && !this.virtualThreadSender.awaitIdle(Math.max(0, deadline - System.currentTimeMillis())))
+            logger.warn("Appender " + this.getName() + " stopped with requests in flight");
+    }
+
+    private void removeShutdownHook() {
+        if (this.shutdownHook == null || Thread.currentThread() == this.shutdownHook)
+            return;
+        try {
+            Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is shutting down already
+        }
+        this.shutdownHook = null;
     }
 
     @Override
@@ -78,106 +400,580 @@ public abstract class AbstractHttpAppender extends AppenderBase<ILoggingEvent> i
         if (event == null || !isStarted()) {
             return;
         }
-        queue.offer(event);
+        // one read per event, a concurrent reconfiguration applies from the next event on
+        final RuntimeConfig config = this.configurator.get();
+        final LoggingLevel level = LoggingLevel.of(event.getLevel());
+        // events of disabled levels never take queue capacity
+        if (!config.isLevelEnabled(level))
+            return;
+        int weight = 1;
+        if (this.sampler != null) {
+            weight = this.sampler.sample(level);
+            // sampled out events are not dropped, the weight of the kept events accounts for them
+            if (weight == 0) {
+                this.metrics.sampledOut();
+                return;
+            }
+        }
+        if (!this.acquireRateLimit(config.getRateLimiter(level))) {
+            this.dropped(event);
+            return;
+        }
+        if (!this.accept(event))
+            return;
+        if (this.enqueue(this.selectWorker(event), this.snapshot(this.weighted(event, weight)))) {
+            this.metrics.enqueued();
+        } else {
+            this.dropped(event);
+            this.onDropped(event);
+        }
     }
 
-    public final void run() {
-        try {
-            while (!Thread.currentThread().isInterrupted()) {
-                if (this.httpClient == null)
-                    break;
+    /**
+     * Called on the logging thread for every event which passed the level check, sampling and rate limits, right
+     * before it is queued. Events which are not accepted are discarded without being counted as dropped.
+     */
+    protected boolean accept(ILoggingEvent event) {
+        return true;
+    }
 
-                processQueue();
-            }
-        } catch (InterruptedException e) {
-            // nothing to do, because we will exit now
+    /**
+     * Called on the logging thread if an accepted event could not be queued, after it was counted as dropped.
+     */
+    protected void onDropped(ILoggingEvent event) {
+    }
+
+    /**
+     * Queues an event the appender created itself, like a summary of other events, without the level check,
+     * sampling and rate limits. Never blocks, the event is dropped and counted if the queue is full.
+     *
+     * @return false if the event was dropped
+     */
+    protected boolean enqueueDirectly(ILoggingEvent event) {
+        if (!this.isStarted())
+            return false;
+        if (this.selectWorker(event).queue.offer(this.snapshot(event))) {
+            this.metrics.enqueued();
+            return true;
+        }
+        this.dropped(event);
+        return false;
+    }
+
+    /**
+     * Adds the sample weight to the MDC of the queued event, so every body format and the persistent queue
+     * carry it without a field of their own. Applied before {@link #snapshot(ILoggingEvent)}, so subclasses
+     * wrapping the snapshot keep the weight.
+     */
+    private ILoggingEvent weighted(ILoggingEvent event, int weight) {
+        if (weight <= 1)
+            return event;
+        return LoggingEventSnapshot.of(event).withMdcProperty(this.samplingWeightKey, Integer.toString(weight));
+    }
+
+    /**
+     * Creates the immutable copy of the event which is queued, so the worker reads the message, throwable and MDC
+     * as they were at logging time without further synchronization, and the queue does not retain the arguments,
+     * the original throwable and the logger context. A persistent queue encodes the event on the logging thread
+     * anyway and gets the event itself. Only called for events which passed the level check, {@link #accept},
+     * sampling and rate limits, right before they are queued.
+     */
+    protected ILoggingEvent snapshot(ILoggingEvent event) {
+        return this.queueType == QueueType.PERSISTENT ? event : LoggingEventSnapshot.of(event);
+    }
+
+    private void dropped(ILoggingEvent event) {
+        this.metrics.dropped(event.getLevel());
+        this.droppedEvents.increment(event.getLevel());
+    }
+
+    /**
+     * Takes a permit from the rate limiter of the event's level. Events over the limit are treated like events
+     * hitting a full queue: with the BLOCK policy the logging thread waits up to {@code overflowTimeoutMs}
+     * for a permit, with all other policies they are dropped.
+     */
+    private boolean acquireRateLimit(RateLimiter rateLimiter) {
+        if (rateLimiter == null)
+            return true;
+        if (this.overflowPolicy == OverflowPolicy.BLOCK)
+            return rateLimiter.tryAcquire(this.overflowTimeoutMs, TimeUnit.MILLISECONDS);
+        return rateLimiter.tryAcquire() == 0;
+    }
+
+    /**
+     * Applies the {@code overflowPolicy}, returns false if the event was dropped.
+     */
+    private boolean enqueue(Worker worker, ILoggingEvent event) {
+        final BlockingQueue<ILoggingEvent> queue = worker.queue;
+        switch (this.overflowPolicy) {
+            case DROP_OLDEST:
+                while (!queue.offer(event)) {
+                    ILoggingEvent oldest = queue.poll();
+                    if (oldest == null)
+                        return false;
+                    this.dropped(oldest);
+                }
+                return true;
+            case DROP_BELOW_LEVEL:
+                if (worker.reservedCapacity > 0 && !event.getLevel().isGreaterOrEqual(this.overflowLevel)
+                        && queue.remainingCapacity() <= worker.reservedCapacity)
+                    return false;
+                return queue.offer(event);
+            case BLOCK:
+                try {
+                    return queue.offer(event, this.overflowTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            default:
+                return queue.offer(event);
         }
     }
 
-    private BlockingQueue<ILoggingEvent> createQueue() {
+    /**
+     * Events with the same ordering key always go to the same worker and keep their order,
+     * events without a key are spread round robin.
+     */
+    private Worker selectWorker(ILoggingEvent event) {
+        if (this.workers.length == 1)
+            return this.workers[0];
+        String key = this.orderingKey.keyOf(event, this.orderingMdcKey);
+        int hash = key != null ? key.hashCode() : this.nextWorker.getAndIncrement();
+        return this.workers[(hash & Integer.MAX_VALUE) % this.workers.length];
+    }
+
+    private BlockingQueue<ILoggingEvent> createQueue(int worker) {
+        if (queueType == QueueType.PERSISTENT) {
+            File directory = new File(persistenceDirectory, WORKER_DIRECTORY_PREFIX + worker);
+            try {
+                return new PersistentEventQueue(directory, persistenceSegmentSize, persistenceMaxSegments,
+                        fsyncPolicy, fsyncIntervalMs);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open persistent queue in " + directory.getAbsolutePath(), e);
+            }
+        }
+        if (queueType == QueueType.RING_BUFFER)
+            return new RingBufferQueue<ILoggingEvent>(queueSize, waitStrategy);
         return queueSize <= 0
                 ? new SynchronousQueue<ILoggingEvent>()
                 : new ArrayBlockingQueue<ILoggingEvent>(queueSize);
     }
 
+    /**
+     * Moves the events persisted by workers which no longer exist, because {@code workerCount} was lowered since
+     * the last run, to the current workers and deletes their directories.
+     */
+    private void mergeRemovedWorkerQueues() {
+        File[] directories = new File(this.persistenceDirectory).listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                if (!file.isDirectory() || !name.startsWith(WORKER_DIRECTORY_PREFIX))
+                    return false;
+                try {
+                    return Integer.parseInt(name.substring(WORKER_DIRECTORY_PREFIX.length())) >= workerCount;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        });
+        for (File directory : directories != null ? directories : new File[0]) {
+            PersistentEventQueue removed;
+            try {
+                removed = new PersistentEventQueue(directory, this.persistenceSegmentSize, this.persistenceMaxSegments,
+                        this.fsyncPolicy, this.fsyncIntervalMs);
+            } catch (IOException e) {
+                logger.warn("Could not open persistent queue in " + directory.getAbsolutePath(), e);
+                continue;
+            }
+            long position = removed.position();
+            ILoggingEvent event;
+            while ((event = removed.poll()) != null && this.selectWorker(event).queue.offer(event))
+                position = removed.position();
+            removed.commit(position);
+            if (event != null) {
+                // the current queues are full, the rest is moved at the next start
+                logger.warn("Could not move all persisted events from " + directory.getAbsolutePath());
+                removed.close();
+            } else if (!removed.delete()) {
+                logger.warn("Could not delete persistent queue in " + directory.getAbsolutePath());
+            }
+        }
+    }
+
     private CloseableHttpClient createHttpClient() {
-        RequestConfig defaultRequestConfig = RequestConfig.custom()
-                .setSocketTimeout(AbstractHttpAppenderConfig.HTTP_SOCKET_TIMEOUT)
-                .setConnectTimeout(AbstractHttpAppenderConfig.HTTP_CONNECTION_TIMEOUT)
-                .setConnectionRequestTimeout(AbstractHttpAppenderConfig.HTTP_CONNECTION_REQUEST_TIMEOUT)
-                .build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(this.maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(this.maxConnectionsTotal);
+        if (this.idleConnectionTimeoutMs > 0) {
+            IdleConnectionEvictor evictor = new IdleConnectionEvictor(connectionManager, this.idleConnectionTimeoutMs);
+            this.scheduler.scheduleWithFixedDelay(evictor, evictor.getIntervalMs(), evictor.getIntervalMs(),
+                    TimeUnit.MILLISECONDS);
+        }
 
         return HttpClients.custom()
-                .setDefaultRequestConfig(defaultRequestConfig)
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(new ConfigurableKeepAliveStrategy(this.keepAliveMs))
+                .setDefaultRequestConfig(this.configurator.get().getRequestConfig())
                 .build();
     }
 
-    private void processQueue() throws InterruptedException {
+    private static int defaultLevelMask() {
+        return (AbstractHttpAppenderConfig.DEFAULT_ERROR ? 1 << LoggingLevel.ERROR.ordinal() : 0)
+                | (AbstractHttpAppenderConfig.DEFAULT_WARN ? 1 << LoggingLevel.WARN.ordinal() : 0)
+                | (AbstractHttpAppenderConfig.DEFAULT_INFO ? 1 << LoggingLevel.INFO.ordinal() : 0)
+                | (AbstractHttpAppenderConfig.DEFAULT_DEBUG ? 1 << LoggingLevel.DEBUG.ordinal() : 0)
+                | (AbstractHttpAppenderConfig.DEFAULT_TRACE ? 1 << LoggingLevel.TRACE.ordinal() : 0);
+    }
+
+    /**
+     * Runs {@link #housekeeping()} on one worker at a time, at most every
+     * {@link AbstractHttpAppenderConfig#WORKER_POLL_INTERVAL_MS}.
+     */
+    private void runHousekeeping() {
+        long now = System.currentTimeMillis();
+        long last = this.lastHousekeeping.get();
+        if (now - last >= AbstractHttpAppenderConfig.WORKER_POLL_INTERVAL_MS
+                && this.lastHousekeeping.compareAndSet(last, now))
+            this.housekeeping();
+    }
+
+    /**
+     * Called by a worker about every {@link AbstractHttpAppenderConfig#WORKER_POLL_INTERVAL_MS}, also while no
+     * events arrive, for periodic work of subclasses. Must not block.
+     */
+    protected void housekeeping() {
+    }
+
+    /**
+     * Sends a synthetic event summarizing the events dropped since the last report. Only one worker
+     * reports per {@code dropReportIntervalMs}. The summary bypasses the level filter.
+     */
+    private void reportDroppedEvents(RequestCompressor compressor) throws InterruptedException {
+        if (this.dropReportIntervalMs <= 0)
+            return;
+        long now = System.currentTimeMillis();
+        long lastReport = this.lastDropReport.get();
+        if (now - lastReport < this.dropReportIntervalMs || !this.lastDropReport.compareAndSet(lastReport, now))
+            return;
+        String report = this.droppedEvents.report();
+        if (report == null)
+            return;
+        LoggingEvent summary = new LoggingEvent();
+        summary.setLevel(Level.WARN);
+        summary.setLoggerName(this.getClass().getName());
+        summary.setThreadName(Thread.currentThread().getName());
+        summary.setMessage(this.getName() != null ? this.getName() + ": " + report : report);
+        summary.setTimeStamp(now);
+        summary.setMDCPropertyMap(Collections.<String, String>emptyMap());
+        this.createAndExecuteRequest(summary, compressor, DeliveryTracker.NONE);
+    }
+
+    private void createAndExecuteRequest(ILoggingEvent event, RequestCompressor compressor,
+                                         DeliveryTracker.Delivery delivery) throws InterruptedException {
         try {
-            while (true) {
-                final ILoggingEvent event = this.queue.take();
-                switch (event.getLevel().levelInt) {
-                    case Level.ERROR_INT:
-                        if (error)
-                            this.createAndExecuteRequest(event);
-                        break;
-                    case Level.WARN_INT:
-                        if (warn)
-                            this.createAndExecuteRequest(event);
-                        break;
-                    case Level.INFO_INT:
-                        if (info)
-                            this.createAndExecuteRequest(event);
-                        break;
-                    case Level.DEBUG_INT:
-                        if (debug)
-                            this.createAndExecuteRequest(event);
-                        break;
-                    case Level.TRACE_INT:
-                        if (trace)
-                            this.createAndExecuteRequest(event);
-                        break;
-                    default:
-                        logger.error("Unknown logging level: " + event.getLevel().levelStr);
-                        break;
-                }
-            }
-        } catch (Exception e) {
-            AbstractHttpAppender.logger.error("Exception caught:", e);
-        } finally {
-            this.httpClient = null;
-            AbstractHttpAppender.logger.info("connection closed");
+            HttpRequestBase createHttpRequest = this.createHttpRequest(event);
+            if (createHttpRequest != null)
+                this.dispatchHttpRequest(createHttpRequest, compressor, delivery);
+            else
+                delivery.completed(true);
+        } catch (HttpAppenderException e) {
+            logger.error("Appender error:", e);
+            // a request which cannot be built would fail again after a restart
+            delivery.completed(true);
         }
     }
 
-    private void createAndExecuteRequest(ILoggingEvent event) {
+    private void createAndExecuteRequest(List<ILoggingEvent> events, RequestCompressor compressor,
+                                         DeliveryTracker.Delivery delivery) throws InterruptedException {
         try {
-            HttpRequestBase createHttpRequest = this.createHttpRequest(event);
+            HttpRequestBase createHttpRequest = this.createHttpRequest(events);
             if (createHttpRequest != null)
-                this.executeHttpRequest(createHttpRequest);
+                this.dispatchHttpRequest(createHttpRequest, compressor, delivery);
+            else
+                delivery.completed(true);
         } catch (HttpAppenderException e) {
             logger.error("Appender error:", e);
+            delivery.completed(true);
+        }
+    }
+
+    /**
+     * @param compressor compresses the request body, null if {@code compression} is NONE
+     * @param delivery   completed once the request succeeded or failed for good
+     */
+    private void dispatchHttpRequest(final HttpRequestBase httpRequest, RequestCompressor compressor,
+                                     final DeliveryTracker.Delivery delivery)
+            throws HttpAppenderException, InterruptedException {
+        if (compressor != null) {
+            try {
+                compressor.compress(httpRequest);
+            } catch (IOException e) {
+                throw new HttpAppenderException("Exception caught due to compress request body: ", e);
+            }
+        }
+        // timeouts apply per request, so a reconfiguration keeps the pooled connections
+        if (httpRequest.getConfig() == null)
+            httpRequest.setConfig(this.configurator.get().getRequestConfig());
+        this.retryPolicy.onRequest();
+        if (this.virtualThreadSender != null) {
+            try {
+                this.virtualThreadSender.send(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            executeWithRetries(httpRequest, delivery);
+                        } catch (HttpAppenderException e) {
+                            logger.error("Appender error:", e);
+                        } catch (InterruptedException e) {
+                            // the sender was closed, a persistent queue replays the events at the next start
+                            delivery.completed(false);
+                        } catch (RuntimeException e) {
+                            // like a broken request of the BLOCKING engine
+                            logger.error("Exception caught:", e);
+                            delivery.completed(true);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the appender is stopping, a persistent queue replays the events at the next start
+                delivery.completed(false);
+                throw e;
+            }
+            return;
+        }
+        if (this.asyncHttpSender == null) {
+            this.executeWithRetries(httpRequest, delivery);
+            return;
+        }
+        this.circuitBreaker.awaitPermission();
+        new AsyncDelivery(httpRequest, delivery).send(true);
+    }
+
+    /**
+     * Completes the delivery as delivered on success and when the endpoint rejected the request with a status code
+     * which is not retryable, so it would be rejected after a restart again.
+     */
+    private void executeWithRetries(HttpRequestBase httpRequest, DeliveryTracker.Delivery delivery)
+            throws HttpAppenderException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            this.circuitBreaker.awaitPermission();
+            this.metrics.requestSent(contentLength(httpRequest));
+            long start = System.nanoTime();
+            boolean recorded = false;
+            try {
+                this.executeHttpRequest(httpRequest);
+                this.latency(System.nanoTime() - start);
+                this.circuitBreaker.onSuccess();
+                recorded = true;
+                delivery.completed(true);
+                return;
+            } catch (HttpAppenderException e) {
+                this.latency(System.nanoTime() - start);
+                // isRetryable records the failure
+                recorded = true;
+                if (!this.isRetryable(httpRequest, e) || !this.retryPolicy.tryRetry(attempt)) {
+                    this.metrics.requestFailed();
+                    delivery.completed(!this.retryPolicy.isRetryable(e));
+                    throw e;
+                }
+                this.metrics.retried();
+                long backoffMs = this.retryPolicy.backoffMs(attempt);
+                logger.warn("Http request failed, retry " + (attempt + 1) + " in " + backoffMs + " ms: " + e.getMessage());
+                Thread.sleep(backoffMs);
+            } finally {
+                // e.g. an overridden executeHttpRequest threw, a half-open breaker must not wait for this probe
+                if (!recorded)
+                    this.circuitBreaker.release();
+            }
+        }
+    }
+
+    /**
+     * Classifies the failure and updates the circuit breaker. Status codes not configured as retryable prove
+     * that the endpoint is up and count as success for the breaker.
+     */
+    private boolean isRetryable(HttpRequestBase httpRequest, HttpAppenderException failure) {
+        if (!this.retryPolicy.isRetryable(failure)) {
+            this.circuitBreaker.onSuccess();
+            return false;
+        }
+        this.circuitBreaker.onFailure();
+        if (failure instanceof HttpStatusException && ((HttpStatusException) failure).getRetryAfterMs() > 0)
+            this.circuitBreaker.openFor(((HttpStatusException) failure).getRetryAfterMs());
+        if (httpRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    private void latency(long nanos) {
+        this.metrics.latency(nanos);
+        if (this.sampler != null)
+            this.sampler.latency(nanos);
+    }
+
+    private static long contentLength(HttpRequestBase httpRequest) {
+        if (httpRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+            return entity != null ? entity.getContentLength() : 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Checks the response of the ASYNC engine and schedules retries on the sender's retry thread.
+     */
+    private final class AsyncDelivery implements FutureCallback<HttpResponse>, Runnable {
+
+        private final HttpRequestBase httpRequest;
+        private final DeliveryTracker.Delivery delivery;
+        private int attempt;
+        private long sentAt;
+
+        private AsyncDelivery(HttpRequestBase httpRequest, DeliveryTracker.Delivery delivery) {
+            this.httpRequest = httpRequest;
+            this.delivery = delivery;
+        }
+
+        /**
+         * @param wait false on the shared scheduler thread, which must not wait for a request in flight
+         * @return false if the request was not sent, because {@code maxInFlight} requests are in flight
+         */
+        private boolean send(boolean wait) throws InterruptedException {
+            boolean sent = false;
+            try {
+                long contentLength = contentLength(this.httpRequest);
+                this.sentAt = System.nanoTime();
+                if (wait) {
+                    asyncHttpSender.send(this.httpRequest, this);
+                    sent = true;
+                } else {
+                    sent = asyncHttpSender.trySend(this.httpRequest, this);
+                }
+                if (sent)
+                    metrics.requestSent(contentLength);
+            } finally {
+                // once sent, the callback records the result
+                if (!sent)
+                    circuitBreaker.release();
+            }
+            return sent;
+        }
+
+        @Override
+        public void completed(HttpResponse response) {
+            latency(System.nanoTime() - this.sentAt);
+            try {
+                checkStatusCode(response);
+                circuitBreaker.onSuccess();
+                this.delivery.completed(true);
+            } catch (HttpAppenderException e) {
+                this.retryOrFail(e);
+            }
+        }
+
+        @Override
+        public void failed(Exception exception) {
+            latency(System.nanoTime() - this.sentAt);
+            this.retryOrFail(new HttpAppenderException("Exception caught due to execute http call: ", exception));
+        }
+
+        @Override
+        public void cancelled() {
+            circuitBreaker.release();
+            logger.info("Http request cancelled");
+            this.delivery.completed(false);
+        }
+
+        private void retryOrFail(HttpAppenderException failure) {
+            if (!isRetryable(this.httpRequest, failure) || !retryPolicy.tryRetry(this.attempt)) {
+                metrics.requestFailed();
+                logger.error("Appender error:", failure);
+                this.delivery.completed(!retryPolicy.isRetryable(failure));
+                return;
+            }
+            metrics.retried();
+            long backoffMs = retryPolicy.backoffMs(this.attempt++);
+            logger.warn("Http request failed, retry " + this.attempt + " in " + backoffMs + " ms: " + failure.getMessage());
+            try {
+                asyncHttpSender.schedule(this, backoffMs);
+            } catch (RejectedExecutionException e) {
+                metrics.requestFailed();
+                logger.error("Appender error:", failure);
+                this.delivery.completed(false);
+            }
+        }
+
+        /**
+         * Sends the request again once the circuit breaker permits it and less than {@code maxInFlight} requests
+         * are in flight.
+         */
+        @Override
+        public void run() {
+            try {
+                long delayMs = circuitBreaker.permitDelayMs();
+                if (delayMs > 0) {
+                    asyncHttpSender.schedule(this, delayMs);
+                    return;
+                }
+                this.httpRequest.reset();
+                if (!this.send(false))
+                    asyncHttpSender.schedule(this, AbstractHttpAppenderConfig.IN_FLIGHT_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.delivery.completed(false);
+            } catch (RuntimeException e) {
+                logger.error("Appender error:", e);
+                this.delivery.completed(false);
+            }
         }
     }
 
     public abstract HttpRequestBase createHttpRequest(ILoggingEvent event) throws HttpAppenderException;
 
+    /**
+     * Creates one request carrying all given events. Only called if {@code maxBatchSize} is greater than one,
+     * so appenders which support batched delivery must override this method.
+     */
+    public HttpRequestBase createHttpRequest(List<ILoggingEvent> events) throws HttpAppenderException {
+        if (events.size() == 1)
+            return this.createHttpRequest(events.get(0));
+        throw new HttpAppenderException(this.getClass().getSimpleName()
+                + " does not support batched delivery, maxBatchSize must be 1");
+    }
+
+    /**
+     * Estimated number of bytes the event adds to a batched request, used to enforce {@code maxBatchBytes}.
+     */
+    protected int estimateEventSize(ILoggingEvent event) {
+        int size = AbstractHttpAppenderConfig.EVENT_SIZE_OVERHEAD;
+        String message = event.getFormattedMessage();
+        if (message != null)
+            size += message.length();
+        for (IThrowableProxy proxy = event.getThrowableProxy(); proxy != null; proxy = proxy.getCause())
+            size += proxy.getStackTraceElementProxyArray().length * AbstractHttpAppenderConfig.STACK_FRAME_SIZE;
+        return size;
+    }
+
     private boolean statusCodeInRange(Integer statusCode) {
         return statusCode != null && statusCode >= successStatusCodeMin && statusCode <= successStatusCodeMax;
     }
 
     public void executeHttpRequest(HttpRequestBase httpRequest) throws HttpAppenderException {
         try {
-            HttpResponse proxyResponse = httpClient.execute(httpRequest);
-
-            StatusLine statusLine = proxyResponse.getStatusLine();
-            Integer statusCode = statusLine != null ? statusLine.getStatusCode() : null;
-            if (!this.statusCodeInRange(statusCode)) {
-                throw new HttpAppenderException("Http request failed. Reason: statusCode="
-                        + (statusCode != null ? statusCode : "no status code retrieved") + " reasonPhrase="
-                        + (statusLine != null ? statusLine.getReasonPhrase() : "no reason retrieved!"));
+            CloseableHttpResponse proxyResponse = httpClient.execute(httpRequest);
+            try {
+                this.checkStatusCode(proxyResponse);
+            } finally {
+                // consuming the body hands the connection back to the pool instead of closing it
+                EntityUtils.consumeQuietly(proxyResponse.getEntity());
+                proxyResponse.close();
             }
-
+        } catch (HttpAppenderException exception) {
+            throw exception;
         } catch (Exception exception) {
             throw new HttpAppenderException("Exception caught due to execute http call: ", exception);
         } finally {
@@ -185,12 +981,172 @@ public abstract class AbstractHttpAppender extends AppenderBase<ILoggingEvent> i
         }
     }
 
+    private void checkStatusCode(HttpResponse response) throws HttpAppenderException {
+        StatusLine statusLine = response.getStatusLine();
+        Integer statusCode = statusLine != null ? statusLine.getStatusCode() : null;
+        if (statusCode != null)
+            this.metrics.responseReceived(statusCode);
+        if (!this.statusCodeInRange(statusCode)) {
+            throw new HttpStatusException("Http request failed. Reason: statusCode="
+                    + (statusCode != null ? statusCode : "no status code retrieved") + " reasonPhrase="
+                    + (statusLine != null ? statusLine.getReasonPhrase() : "no reason retrieved!"),
+                    statusCode != null ? statusCode : -1, RetryPolicy.retryAfterMs(response));
+        }
+    }
+
+    /**
+     * Consumes one queue. With {@code workerCount} greater than one every worker owns its own queue,
+     * so events of one worker are sent in order while the workers run in parallel.
+     */
+    private final class Worker implements Runnable {
+
+        private final BlockingQueue<ILoggingEvent> queue;
+        private final PersistentEventQueue persistentQueue;
+        private final DeliveryTracker tracker;
+        private final int reservedCapacity;
+        private final RequestCompressor compressor;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean draining;
+
+        private Worker(BlockingQueue<ILoggingEvent> queue) {
+            this.queue = queue;
+            this.persistentQueue = queue instanceof PersistentEventQueue ? (PersistentEventQueue) queue : null;
+            // the BLOCKING engine completes every request before it takes the next events anyway
+            this.tracker = new DeliveryTracker(this.persistentQueue,
+                    orderingKey != OrderingKey.NONE && httpEngine != HttpEngine.BLOCKING);
+            // a persistent queue is bounded by disk space, there is no capacity to reserve
+            this.reservedCapacity = this.persistentQueue != null ? 0
+                    : queue.remainingCapacity() * AbstractHttpAppenderConfig.OVERFLOW_RESERVED_CAPACITY_PERCENT / 100;
+            this.compressor = compression != Compression.NONE
+                    ? new RequestCompressor(compression, compressionMinSize) : null;
+        }
+
+        @Override
+        public void run() {
+            metrics.workerStarted();
+            try {
+                processQueue();
+            } catch (InterruptedException e) {
+                // nothing to do, because we will exit now
+            } finally {
+                this.finished.countDown();
+                metrics.workerStopped();
+                if (this.compressor != null)
+                    this.compressor.end();
+            }
+        }
+
+        private void processQueue() throws InterruptedException {
+            try {
+                while (true) {
+                    // a draining worker leaves failed events to the next start
+                    if (!this.draining && this.tracker.rewindIfFailed())
+                        this.awaitRedelivery();
+                    DeliveryTracker.Delivery delivery = DeliveryTracker.NONE;
+                    try {
+                        if (configurator.get().getMaxBatchSize() <= 1) {
+                            final ILoggingEvent event = this.takeEvent();
+                            if (event == null)
+                                return;
+                            delivery = this.tracker.taken();
+                            createAndExecuteRequest(event, this.compressor, delivery);
+                        } else {
+                            final List<ILoggingEvent> batch = this.takeBatch();
+                            if (batch.isEmpty())
+                                return;
+                            delivery = this.tracker.taken();
+                            createAndExecuteRequest(batch, this.compressor, delivery);
+                        }
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        // a single broken event or request must not end the worker, nor be replayed forever
+                        AbstractHttpAppender.logger.error("Exception caught:", e);
+                        delivery.completed(true);
+                    }
+                }
+            } finally {
+                AbstractHttpAppender.logger.info("worker stopped");
+            }
+        }
+
+        /**
+         * Pauses before the events of a failed request are sent again, while the endpoint is down the circuit
+         * breaker delays them further.
+         */
+        private void awaitRedelivery() throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + retryPolicy.redeliveryBackoffMs();
+            for (long remaining = deadline - System.currentTimeMillis(); remaining > 0 && !this.draining;
+                 remaining = deadline - System.currentTimeMillis()) {
+                Thread.sleep(Math.min(remaining, AbstractHttpAppenderConfig.WORKER_POLL_INTERVAL_MS));
+                runHousekeeping();
+            }
+        }
+
+        /**
+         * Waits for the next event and reports dropped events while waiting. The wait is split into slices
+         * of {@link AbstractHttpAppenderConfig#WORKER_POLL_INTERVAL_MS}, so a worker notices when it has to drain.
+         *
+         * @return null once the worker drains and its queue is empty
+         */
+        private ILoggingEvent takeEvent() throws InterruptedException {
+            while (true) {
+                if (this.draining) {
+                    ILoggingEvent event = this.queue.poll();
+                    if (event != null)
+                        metrics.dequeued();
+                    return event;
+                }
+                ILoggingEvent event = this.queue.poll(AbstractHttpAppenderConfig.WORKER_POLL_INTERVAL_MS,
+                        TimeUnit.MILLISECONDS);
+                reportDroppedEvents(this.compressor);
+                runHousekeeping();
+                if (event != null) {
+                    metrics.dequeued();
+                    return event;
+                }
+            }
+        }
+
+        /**
+         * Blocks until at least one event is available and then drains further events until
+         * {@code maxBatchSize} or {@code maxBatchBytes} is reached or {@code lingerMs} has elapsed.
+         * The limits are read once the first event arrived, so a batch never mixes two configurations.
+         * A draining worker does not linger, and gets an empty batch once its queue is empty.
+         */
+        private List<ILoggingEvent> takeBatch() throws InterruptedException {
+            final ILoggingEvent first = this.takeEvent();
+            if (first == null)
+                return Collections.emptyList();
+            final RuntimeConfig config = configurator.get();
+            final List<ILoggingEvent> batch = new ArrayList<ILoggingEvent>(config.getMaxBatchSize());
+            batch.add(first);
+            int batchBytes = estimateEventSize(first);
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getLingerMs());
+            while (batch.size() < config.getMaxBatchSize() && batchBytes < config.getMaxBatchBytes()) {
+                final long remaining = deadline - System.nanoTime();
+                final ILoggingEvent event = remaining > 0 && !this.draining
+                        ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : this.queue.poll();
+                if (event == null)
+                    break;
+                metrics.dequeued();
+                batch.add(event);
+                batchBytes += estimateEventSize(event);
+            }
+            return batch;
+        }
+    }
+
     public void setRequestUrl(String requestUrl) {
         this.requestUrl = requestUrl;
     }
 
+    /**
+     * @return the current request url, which may have been changed while the appender runs
+     */
     public String getRequestUrl() {
-        return this.requestUrl;
+        RuntimeConfigurator configurator = this.configurator;
+        return configurator != null ? configurator.get().getRequestUrl() : this.requestUrl;
     }
 
     public void setSuccessStatusCodeMin(int successStatusCodeMin) {
@@ -205,28 +1161,237 @@ public abstract class AbstractHttpAppender extends AppenderBase<ILoggingEvent> i
         this.queueSize = queueSize;
     }
 
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public void setLingerMs(long lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public void setHttpEngine(String httpEngine) {
+        this.httpEngine = HttpEngine.valueOf(httpEngine.toUpperCase());
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public void setKeepAliveMs(long keepAliveMs) {
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    public void setIdleConnectionTimeoutMs(long idleConnectionTimeoutMs) {
+        this.idleConnectionTimeoutMs = idleConnectionTimeoutMs;
+    }
+
+    public void setStaleConnectionCheck(boolean staleConnectionCheck) {
+        this.staleConnectionCheck = staleConnectionCheck;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    public void setOrderingKey(String orderingKey) {
+        this.orderingKey = OrderingKey.valueOf(orderingKey.toUpperCase());
+    }
+
+    public void setOrderingMdcKey(String orderingMdcKey) {
+        this.orderingMdcKey = orderingMdcKey;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = Compression.valueOf(compression.toUpperCase());
+    }
+
+    public void setCompressionMinSize(int compressionMinSize) {
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetryInitialBackoffMs(long retryInitialBackoffMs) {
+        this.retryInitialBackoffMs = retryInitialBackoffMs;
+    }
+
+    public void setRetryMaxBackoffMs(long retryMaxBackoffMs) {
+        this.retryMaxBackoffMs = retryMaxBackoffMs;
+    }
+
+    public void setRetryBudgetPercent(int retryBudgetPercent) {
+        this.retryBudgetPercent = retryBudgetPercent;
+    }
+
+    public void setRetryStatusCodes(String retryStatusCodes) {
+        this.retryStatusCodes = retryStatusCodes;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerOpenMs(long circuitBreakerOpenMs) {
+        this.circuitBreakerOpenMs = circuitBreakerOpenMs;
+    }
+
+    public void setRateLimit(double rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public void setRateLimitBurst(int rateLimitBurst) {
+        this.rateLimitBurst = rateLimitBurst;
+    }
+
+    /**
+     * Sets the rate limit of one level, e.g. {@code ERROR:10} or {@code ERROR:10:50} with a burst of 50.
+     * A rate of 0 exempts the level from {@code rateLimit}.
+     */
+    public void addLevelRateLimit(String levelRateLimit) {
+        RuntimeConfig.parseLevelRateLimit(levelRateLimit, this.levelRateLimits, this.levelRateLimitBursts);
+    }
+
+    public void setJmxMetrics(boolean jmxMetrics) {
+        this.jmxMetrics = jmxMetrics;
+    }
+
+    public AppenderMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public void setShutdownTimeoutMs(long shutdownTimeoutMs) {
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+    }
+
+    public void setShutdownHook(boolean shutdownHook) {
+        this.shutdownHookEnabled = shutdownHook;
+    }
+
+    public void setReloadFile(String reloadFile) {
+        this.reloadFile = reloadFile;
+    }
+
+    public void setReloadIntervalMs(long reloadIntervalMs) {
+        this.reloadIntervalMs = reloadIntervalMs;
+    }
+
+    public void setJmxConfig(boolean jmxConfig) {
+        this.jmxConfig = jmxConfig;
+    }
+
+    public void setSampling(boolean sampling) {
+        this.sampling = sampling;
+    }
+
+    public void setSamplingQueueThresholdPercent(int samplingQueueThresholdPercent) {
+        this.samplingQueueThresholdPercent = samplingQueueThresholdPercent;
+    }
+
+    public void setSamplingTargetLatencyMs(long samplingTargetLatencyMs) {
+        this.samplingTargetLatencyMs = samplingTargetLatencyMs;
+    }
+
+    public void setSamplingMaxEventsPerSecond(double samplingMaxEventsPerSecond) {
+        this.samplingMaxEventsPerSecond = samplingMaxEventsPerSecond;
+    }
+
+    public void setSamplingMaxWeight(int samplingMaxWeight) {
+        this.samplingMaxWeight = samplingMaxWeight;
+    }
+
+    public void setSamplingWeightKey(String samplingWeightKey) {
+        this.samplingWeightKey = samplingWeightKey;
+    }
+
+    /**
+     * @return the settings which can be changed while the appender runs, null if it was never started
+     */
+    public RuntimeConfigMXBean getRuntimeConfig() {
+        return this.configurator;
+    }
+
+    public void setQueueType(String queueType) {
+        this.queueType = QueueType.valueOf(queueType.toUpperCase());
+    }
+
+    public void setWaitStrategy(String waitStrategy) {
+        this.waitStrategy = WaitStrategy.valueOf(waitStrategy.toUpperCase());
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase());
+    }
+
+    public void setOverflowLevel(String overflowLevel) {
+        this.overflowLevel = Level.toLevel(overflowLevel, AbstractHttpAppenderConfig.DEFAULT_OVERFLOW_LEVEL);
+    }
+
+    public void setOverflowTimeoutMs(long overflowTimeoutMs) {
+        this.overflowTimeoutMs = overflowTimeoutMs;
+    }
+
+    public void setDropReportIntervalMs(long dropReportIntervalMs) {
+        this.dropReportIntervalMs = dropReportIntervalMs;
+    }
+
+    /**
+     * @return number of events dropped with the given level since the appender was created
+     */
+    public long getDroppedEventCount(LoggingLevel level) {
+        return this.metrics.getDroppedEvents(level);
+    }
+
+    public long getDroppedEventCount() {
+        return this.metrics.getDroppedEventsTotal();
+    }
+
+    public void setPersistenceDirectory(String persistenceDirectory) {
+        this.persistenceDirectory = persistenceDirectory;
+    }
+
+    public void setPersistenceSegmentSize(int persistenceSegmentSize) {
+        this.persistenceSegmentSize = persistenceSegmentSize;
+    }
+
+    public void setPersistenceMaxSegments(int persistenceMaxSegments) {
+        this.persistenceMaxSegments = persistenceMaxSegments;
+    }
+
+    public void setFsyncPolicy(String fsyncPolicy) {
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.toUpperCase());
+    }
+
+    public void setFsyncIntervalMs(long fsyncIntervalMs) {
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
     public void addLoggingLevel(String state) {
-        if (state == null || state.length() <= 0) {
-            throw new IllegalArgumentException("null, empty or not the right <LoggingLevel> property. States: "
-                    + Arrays.toString(LoggingLevel.values()));
-        }
-        LoggingLevel logState = LoggingLevel.valueOf(state.toUpperCase());
-        switch (logState) {
-            case ERROR:
-                this.error = true;
-                break;
-            case WARN:
-                this.warn = true;
-                break;
-            case INFO:
-                this.info = true;
-                break;
-            case DEBUG:
-                this.debug = true;
-                break;
-            case TRACE:
-                this.trace = true;
-                break;
-        }
+        this.levelMask |= RuntimeConfig.levelBit(state);
     }
 }
@@ -1,5 +1,9 @@
 package com.mikewinkelmann.logging.appender.http;
 
+import ch.qos.logback.classic.Level;
+import com.mikewinkelmann.logging.appender.http.queue.FsyncPolicy;
+import com.mikewinkelmann.logging.appender.http.queue.WaitStrategy;
+
 /**
  * Default configuration for {@link AbstractHttpAppender}.
  *
@@ -11,6 +15,81 @@ public class AbstractHttpAppenderConfig {
     public static final int DEFAULT_SUCCESS_CODE_MAX = 299;
     public static final int DEFAULT_SUCCESS_CODE_MIN = 200;
     public static final int DEFAULT_QUEUE_SIZE = 10;
+    public static final QueueType DEFAULT_QUEUE_TYPE = QueueType.ARRAY;
+    public static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.PARK;
+
+    // overflow
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_NEWEST;
+    public static final Level DEFAULT_OVERFLOW_LEVEL = Level.WARN;
+    public static final long DEFAULT_OVERFLOW_TIMEOUT_MS = 100;
+    public static final int OVERFLOW_RESERVED_CAPACITY_PERCENT = 25;
+    public static final long DEFAULT_DROP_REPORT_INTERVAL_MS = 60000;
+
+    // persistence
+    public static final int DEFAULT_PERSISTENCE_SEGMENT_SIZE = 16777216; // 16MegaBytes
+    public static final int DEFAULT_PERSISTENCE_MAX_SEGMENTS = 64;
+    public static final FsyncPolicy DEFAULT_FSYNC_POLICY = FsyncPolicy.INTERVAL;
+    public static final long DEFAULT_FSYNC_INTERVAL_MS = 1000;
+
+    // workers
+    public static final int DEFAULT_WORKER_COUNT = 1;
+    public static final int MAX_WORKER_COUNT = 16;
+    public static final OrderingKey DEFAULT_ORDERING_KEY = OrderingKey.NONE;
+
+    // batching
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1;
+    public static final int DEFAULT_MAX_BATCH_BYTES = 1048576; // 1MegaByte
+    public static final long DEFAULT_LINGER_MS = 0;
+    public static final int EVENT_SIZE_OVERHEAD = 128;
+    public static final int STACK_FRAME_SIZE = 80;
+
+    // engine
+    public static final HttpEngine DEFAULT_HTTP_ENGINE = HttpEngine.BLOCKING;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    public static final long IN_FLIGHT_POLL_MS = 10;
+
+    // compression
+    public static final Compression DEFAULT_COMPRESSION = Compression.NONE;
+    public static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024; // 1KiloByte
+
+    // retries
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_RETRY_INITIAL_BACKOFF_MS = 500;
+    public static final long DEFAULT_RETRY_MAX_BACKOFF_MS = 30000;
+    public static final int DEFAULT_RETRY_BUDGET_PERCENT = 20;
+    public static final int RETRY_BUDGET_MAX_TOKENS = 10;
+    public static final String DEFAULT_RETRY_STATUS_CODES = "408,429,500,502,503,504";
+    public static final long MAX_RETRY_AFTER_MS = 600000;
+    public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_MS = 30000;
+
+    // rate limit
+    public static final double DEFAULT_RATE_LIMIT = 0;
+    public static final int DEFAULT_RATE_LIMIT_BURST = 0;
+
+    // sampling
+    public static final boolean DEFAULT_SAMPLING = false;
+    public static final int DEFAULT_SAMPLING_QUEUE_THRESHOLD_PERCENT = 50;
+    public static final long DEFAULT_SAMPLING_TARGET_LATENCY_MS = 1000;
+    public static final double DEFAULT_SAMPLING_MAX_EVENTS_PER_SECOND = 0;
+    public static final int DEFAULT_SAMPLING_MAX_WEIGHT = 64;
+    public static final String DEFAULT_SAMPLING_WEIGHT_KEY = "sampleWeight";
+    public static final long SAMPLING_UPDATE_INTERVAL_MS = 250;
+    public static final double SAMPLING_PRESSURE_INCREASE = 0.1;
+    public static final double SAMPLING_PRESSURE_DECREASE = 0.05;
+
+    // metrics
+    public static final boolean DEFAULT_JMX_METRICS = true;
+
+    // shutdown
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MS = 5000;
+    public static final boolean DEFAULT_SHUTDOWN_HOOK = true;
+    public static final long WORKER_POLL_INTERVAL_MS = 100;
+    public static final long WORKER_STOP_TIMEOUT_MS = 1000;
+
+    // runtime reconfiguration
+    public static final long DEFAULT_RELOAD_INTERVAL_MS = 5000;
+    public static final boolean DEFAULT_JMX_CONFIG = true;
 
     // notify levels
     public static final boolean DEFAULT_WARN = false;
@@ -24,4 +103,11 @@ public class AbstractHttpAppenderConfig {
     public static final int HTTP_CONNECTION_TIMEOUT = 5000;
     public static final int HTTP_SOCKET_TIMEOUT = 5000;
 
+    // connection pool
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 8;
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 16;
+    public static final long DEFAULT_KEEP_ALIVE_MS = 60000;
+    public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT_MS = 30000;
+    public static final boolean DEFAULT_STALE_CONNECTION_CHECK = true;
+
 }
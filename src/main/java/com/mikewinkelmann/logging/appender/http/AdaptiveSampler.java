@@ -0,0 +1,173 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.mikewinkelmann.logging.appender.LoggingLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Samples events of low levels while the appender is under load. A single pressure between 0 and 1 rises
+ * while the queues are filled beyond the threshold, the mean request latency exceeds the target or more
+ * events than the budget are kept, and falls slowly otherwise. The pressure lowers the share of kept TRACE,
+ * DEBUG and INFO events first and of WARN events in its upper half, ERROR events are always kept.
+ * <p>
+ * Every level keeps one in {@code weight} events, with the weight a power of two up to {@code maxWeight}.
+ * The weight of a kept event tells backends how many events it stands for. The pressure is updated by the
+ * first logging thread after every {@link AbstractHttpAppenderConfig#SAMPLING_UPDATE_INTERVAL_MS}, the other
+ * threads only read the published weights.
+ *
+ * @author Mike Winkelmann
+ */
+class AdaptiveSampler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveSampler.class);
+    private static final LoggingLevel[] LEVELS = LoggingLevel.values();
+
+    private final String name;
+    private final Collection<? extends BlockingQueue<?>> queues;
+    private final double queueThreshold;
+    private final long targetLatencyNanos;
+    private final double maxEventsPerSecond;
+    private final int maxWeight;
+    private final double maxShift;
+    private final long updateIntervalNanos;
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private final LongAdder kept = new LongAdder();
+    private final AtomicLong nextUpdate;
+    private volatile long lastUpdate;
+    private volatile double pressure;
+    private volatile int[] weights = new int[LEVELS.length];
+
+    /**
+     * @param queueThresholdPercent queue occupancy in percent above which the pressure rises
+     * @param maxEventsPerSecond    budget of kept events per second, 0 for no budget
+     * @param maxWeight             the largest weight, so at least one in {@code maxWeight} events is kept
+     */
+    AdaptiveSampler(String name, Collection<? extends BlockingQueue<?>> queues, int queueThresholdPercent,
+                    long targetLatencyMs, double maxEventsPerSecond, int maxWeight) {
+        this.name = name;
+        this.queues = queues;
+        this.queueThreshold = queueThresholdPercent / 100.0;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.maxEventsPerSecond = maxEventsPerSecond;
+        this.maxWeight = maxWeight;
+        this.maxShift = Math.log(maxWeight) / Math.log(2);
+        this.updateIntervalNanos =
+                TimeUnit.MILLISECONDS.toNanos(AbstractHttpAppenderConfig.SAMPLING_UPDATE_INTERVAL_MS);
+        long now = System.nanoTime();
+        this.lastUpdate = now;
+        this.nextUpdate = new AtomicLong(now + this.updateIntervalNanos);
+        Arrays.fill(this.weights, 1);
+    }
+
+    /**
+     * @return the weight of the kept event, 0 if the event is sampled out
+     */
+    int sample(LoggingLevel level) {
+        long now = System.nanoTime();
+        long next = this.nextUpdate.get();
+        if (now - next >= 0 && this.nextUpdate.compareAndSet(next, now + this.updateIntervalNanos))
+            this.update(now);
+        int weight = this.weights[level.ordinal()];
+        if (weight > 1 && ThreadLocalRandom.current().nextInt(weight) != 0)
+            return 0;
+        this.kept.increment();
+        return weight;
+    }
+
+    void latency(long nanos) {
+        this.latencySum.add(nanos);
+        this.latencyCount.increment();
+    }
+
+    /**
+     * @return the current weight per level, indexed by {@link LoggingLevel#ordinal()}
+     */
+    int[] getWeights() {
+        return this.weights.clone();
+    }
+
+    private void update(long now) {
+        long elapsed = Math.max(1, now - this.lastUpdate);
+        this.lastUpdate = now;
+        long count = this.latencyCount.sumThenReset();
+        long latencySum = this.latencySum.sumThenReset();
+        double keptPerSecond = this.kept.sumThenReset() * 1e9 / elapsed;
+        boolean overloaded = this.occupancy() > this.queueThreshold
+                || (count > 0 && latencySum / count > this.targetLatencyNanos)
+                || (this.maxEventsPerSecond > 0 && keptPerSecond > this.maxEventsPerSecond);
+        double pressure = this.pressure;
+        if (overloaded) {
+            pressure = Math.min(1, pressure + AbstractHttpAppenderConfig.SAMPLING_PRESSURE_INCREASE);
+        } else {
+            // relax for every interval passed, the sampler is only updated while events arrive
+            double intervals = (double) elapsed / this.updateIntervalNanos;
+            pressure = Math.max(0, pressure - AbstractHttpAppenderConfig.SAMPLING_PRESSURE_DECREASE * intervals);
+        }
+        this.pressure = pressure;
+        int[] weights = this.weightsOf(pressure);
+        if (Arrays.equals(weights, this.weights))
+            return;
+        boolean wasSampling = this.weights[LoggingLevel.TRACE.ordinal()] > 1;
+        this.weights = weights;
+        boolean sampling = weights[LoggingLevel.TRACE.ordinal()] > 1;
+        // starting and stopping is worth an info, the steps in between are not
+        if (sampling != wasSampling)
+            logger.info("Appender " + this.name + (sampling ? " started" : " stopped") + " sampling, weights: "
+                    + this.describe(weights));
+        else if (logger.isDebugEnabled())
+            logger.debug("Appender " + this.name + " sampling weights: " + this.describe(weights));
+    }
+
+    /**
+     * @return the highest occupancy of the bounded queues, between 0 and 1
+     */
+    private double occupancy() {
+        double occupancy = 0;
+        for (BlockingQueue<?> queue : this.queues) {
+            int remaining = queue.remainingCapacity();
+            // unbounded, e.g. the persistent queue
+            if (remaining == Integer.MAX_VALUE)
+                continue;
+            int size = queue.size();
+            if (size + remaining > 0)
+                occupancy = Math.max(occupancy, (double) size / (size + remaining));
+        }
+        return occupancy;
+    }
+
+    private int[] weightsOf(double pressure) {
+        int[] weights = new int[LEVELS.length];
+        for (LoggingLevel level : LEVELS) {
+            final double levelPressure;
+            if (level == LoggingLevel.ERROR)
+                levelPressure = 0;
+            else if (level == LoggingLevel.WARN)
+                levelPressure = Math.max(0, pressure * 2 - 1);
+            else
+                levelPressure = Math.min(1, pressure * 2);
+            weights[level.ordinal()] = Math.min(this.maxWeight, 1 << (int) Math.round(levelPressure * this.maxShift));
+        }
+        return weights;
+    }
+
+    /**
+     * @return e.g. {@code ERROR=1, WARN=1, INFO=8, DEBUG=8, TRACE=8}
+     */
+    private String describe(int[] weights) {
+        StringBuilder description = new StringBuilder();
+        for (LoggingLevel level : LEVELS)
+            description.append(description.length() > 0 ? ", " : "").append(level).append('=')
+                    .append(weights[level.ordinal()]);
+        return description.toString();
+    }
+
+}
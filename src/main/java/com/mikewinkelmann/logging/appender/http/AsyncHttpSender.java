@@ -0,0 +1,189 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+import org.apache.http.nio.entity.NByteArrayEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends requests with a non-blocking http client and keeps a bounded number of them in flight.
+ * If the limit is reached {@link #send} blocks the calling worker until a response arrives,
+ * so a slow endpoint fills the appender queue instead of piling up requests.
+ * Retries are delayed on the scheduler thread of the appender, so the callbacks never block the client's I/O threads.
+ * The scheduler thread is shared, so retries are sent with {@link #trySend}, which never blocks.
+ * <p>
+ * The non-blocking client reads request bodies with {@link HttpEntity#getContent()}, which entities like the
+ * multipart entity of httpmime do not implement. Bodies are therefore written with {@link HttpEntity#writeTo}
+ * into a buffer first, unless the entity produces its content for the non-blocking client itself.
+ *
+ * @author Mike Winkelmann
+ */
+class AsyncHttpSender implements Closeable {
+
+    private static final long IDLE_POLL_MS = 10;
+
+    private final CloseableHttpAsyncClient httpAsyncClient;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private final ScheduledExecutorService retryScheduler;
+
+    /**
+     * @param retryScheduler scheduler of the appender, which shuts it down
+     */
+    AsyncHttpSender(RequestConfig requestConfig, ConnectionKeepAliveStrategy keepAliveStrategy,
+                    int maxConnectionsPerRoute, int maxConnectionsTotal, int maxInFlight,
+                    ScheduledExecutorService retryScheduler) {
+        this.retryScheduler = retryScheduler;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.httpAsyncClient = HttpAsyncClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setMaxConnTotal(maxConnectionsTotal)
+                .build();
+        this.httpAsyncClient.start();
+    }
+
+    void send(HttpRequestBase httpRequest, FutureCallback<HttpResponse> callback) throws InterruptedException {
+        this.inFlight.acquire();
+        this.execute(httpRequest, callback);
+    }
+
+    /**
+     * Sends the request only if less than {@code maxInFlight} requests are in flight, without blocking.
+     *
+     * @return false if the request was not sent
+     */
+    boolean trySend(HttpRequestBase httpRequest, FutureCallback<HttpResponse> callback) {
+        if (!this.inFlight.tryAcquire())
+            return false;
+        this.execute(httpRequest, callback);
+        return true;
+    }
+
+    /**
+     * Sends the request with the in-flight permit taken by the caller.
+     */
+    private void execute(HttpRequestBase httpRequest, final FutureCallback<HttpResponse> callback) {
+        try {
+            bufferEntity(httpRequest);
+        } catch (IOException e) {
+            this.inFlight.release();
+            // like a body the client failed to write
+            callback.failed(e);
+            return;
+        }
+        try {
+            this.httpAsyncClient.execute(httpRequest, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    inFlight.release();
+                    callback.completed(response);
+                }
+
+                @Override
+                public void failed(Exception exception) {
+                    inFlight.release();
+                    callback.failed(exception);
+                }
+
+                @Override
+                public void cancelled() {
+                    inFlight.release();
+                    callback.cancelled();
+                }
+            });
+        } catch (RuntimeException e) {
+            this.inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until no request is in flight or scheduled for a retry anymore.
+     *
+     * @return false if requests were still pending when the timeout elapsed
+     */
+    boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (this.inFlight.tryAcquire(this.maxInFlight, Math.max(0, Math.min(remaining, IDLE_POLL_MS)),
+                    TimeUnit.MILLISECONDS)) {
+                this.inFlight.release(this.maxInFlight);
+                if (this.scheduled.get() == 0)
+                    return true;
+                Thread.sleep(Math.max(0, Math.min(remaining, IDLE_POLL_MS)));
+            }
+            if (remaining <= 0)
+                return false;
+        }
+    }
+
+    /**
+     * Runs the task after the delay on the retry thread.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the appender is stopped
+     */
+    void schedule(final Runnable task, long delayMs) {
+        this.scheduled.incrementAndGet();
+        try {
+            this.retryScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        // after the task, which has sent its request or scheduled itself again
+                        scheduled.decrementAndGet();
+                    }
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            this.scheduled.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the entity of the request by a buffered copy the non-blocking client can send, which is
+     * repeatable as well. An entity the client can send as it is stays in place.
+     */
+    private static void bufferEntity(HttpRequestBase httpRequest) throws IOException {
+        if (!(httpRequest instanceof HttpEntityEnclosingRequest))
+            return;
+        HttpEntityEnclosingRequest request = (HttpEntityEnclosingRequest) httpRequest;
+        HttpEntity entity = request.getEntity();
+        if (entity == null || entity instanceof HttpAsyncContentProducer)
+            return;
+        ByteArrayOutputStream content = new ByteArrayOutputStream((int) Math.max(0, entity.getContentLength()));
+        entity.writeTo(content);
+        NByteArrayEntity buffered = new NByteArrayEntity(content.toByteArray());
+        buffered.setContentType(entity.getContentType());
+        buffered.setContentEncoding(entity.getContentEncoding());
+        request.setEntity(buffered);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.httpAsyncClient.close();
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stops all workers of an appender from sending while the endpoint is down.
+ * <p>
+ * After {@code failureThreshold} consecutive failed requests the breaker opens for {@code openMs}. Afterwards
+ * it is half-open and exactly one request is let through as probe. If the probe succeeds, the breaker closes,
+ * otherwise it opens again. A {@code Retry-After} header of the endpoint opens the breaker for the requested time
+ * even if the threshold is not reached.
+ *
+ * @author Mike Winkelmann
+ */
+class CircuitBreaker {
+
+    private static final long HALF_OPEN_POLL_MS = 100;
+
+    private final int failureThreshold;
+    private final long openMs;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntil = new AtomicLong();
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    /**
+     * @param failureThreshold consecutive failures opening the breaker, 0 only opens it for {@code Retry-After}
+     */
+    CircuitBreaker(int failureThreshold, long openMs) {
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+    }
+
+    /**
+     * Returns 0 if a request may be sent now, which makes the caller the probe of a half-open breaker.
+     * Otherwise returns the time in milliseconds to wait before asking again.
+     */
+    long permitDelayMs() {
+        long until = this.openUntil.get();
+        if (until == 0)
+            return 0;
+        long delay = until - System.currentTimeMillis();
+        if (delay > 0)
+            return delay;
+        return this.probing.compareAndSet(false, true) ? 0 : HALF_OPEN_POLL_MS;
+    }
+
+    /**
+     * Blocks until a request may be sent.
+     */
+    void awaitPermission() throws InterruptedException {
+        for (long delay = this.permitDelayMs(); delay > 0; delay = this.permitDelayMs())
+            Thread.sleep(delay);
+    }
+
+    /**
+     * The endpoint answered, closes the breaker.
+     */
+    void onSuccess() {
+        this.consecutiveFailures.set(0);
+        this.openUntil.set(0);
+        this.probing.set(false);
+    }
+
+    /**
+     * The endpoint failed or answered with a retryable status code.
+     */
+    void onFailure() {
+        int failures = this.consecutiveFailures.incrementAndGet();
+        if (this.probing.get() || (this.failureThreshold > 0 && failures >= this.failureThreshold))
+            this.openFor(this.openMs);
+    }
+
+    /**
+     * Called instead of {@link #onSuccess()} or {@link #onFailure()} if a permitted request ended without an
+     * answer or failure of the endpoint, e.g. because it could not be sent. Lets the next request probe.
+     */
+    void release() {
+        this.probing.set(false);
+    }
+
+    /**
+     * Opens the breaker for at least the given time, used for {@code Retry-After}.
+     */
+    void openFor(long ms) {
+        long until = System.currentTimeMillis() + ms;
+        while (true) {
+            long current = this.openUntil.get();
+            if (current >= until || this.openUntil.compareAndSet(current, until))
+                break;
+        }
+        this.probing.set(false);
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.mikewinkelmann.logging.appender.http;
+
+/**
+ * Enum for all supported encodings of the request bodies sent by an {@link AbstractHttpAppender}.
+ *
+ * @author Mike Winkelmann
+ */
+public enum Compression {
+
+    /**
+     * Request bodies are sent as created.
+     */
+    NONE(null),
+
+    /**
+     * Request bodies are compressed in the gzip format, {@code Content-Encoding: gzip}.
+     */
+    GZIP("gzip"),
+
+    /**
+     * Request bodies are compressed in the zlib format, {@code Content-Encoding: deflate}.
+     */
+    DEFLATE("deflate");
+
+    private final String contentEncoding;
+
+    Compression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    public String getContentEncoding() {
+        return this.contentEncoding;
+    }
+
+}
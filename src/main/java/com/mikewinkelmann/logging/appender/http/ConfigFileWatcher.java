@@ -0,0 +1,66 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Checks the reload file and applies it to the {@link RuntimeConfigurator} once it was modified. Runs every
+ * {@code reloadIntervalMs} on the scheduler of the appender.
+ * A file which cannot be read or holds an invalid value is logged and skipped, the settings stay unchanged
+ * until the next modification.
+ *
+ * @author Mike Winkelmann
+ */
+class ConfigFileWatcher implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigFileWatcher.class);
+
+    private final File file;
+    private final RuntimeConfigurator configurator;
+    private long lastModified, lastLength;
+
+    ConfigFileWatcher(File file, RuntimeConfigurator configurator) {
+        this.file = file;
+        this.configurator = configurator;
+    }
+
+    @Override
+    public void run() {
+        this.check();
+    }
+
+    /**
+     * Applies the file if it was modified since the last check.
+     */
+    void check() {
+        long modified = this.file.lastModified();
+        long length = this.file.length();
+        // a missing file has neither, it is applied as soon as it is created
+        if (modified == 0 || (modified == this.lastModified && length == this.lastLength))
+            return;
+        this.lastModified = modified;
+        this.lastLength = length;
+        Properties properties = new Properties();
+        try {
+            InputStream in = new FileInputStream(this.file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            this.configurator.reconfigure(properties);
+        } catch (IOException e) {
+            logger.warn("Could not read reload file " + this.file.getAbsolutePath(), e);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid reload file " + this.file.getAbsolutePath() + ", settings unchanged: "
+                    + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Keeps pooled connections alive for the duration announced by the server in its {@code Keep-Alive} header,
+ * but never longer than the configured {@code keepAliveMs}. Without a header {@code keepAliveMs} is used.
+ *
+ * @author Mike Winkelmann
+ */
+class ConfigurableKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+    private final long keepAliveMs;
+
+    ConfigurableKeepAliveStrategy(long keepAliveMs) {
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long serverKeepAliveMs = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        if (this.keepAliveMs <= 0)
+            return serverKeepAliveMs;
+        return serverKeepAliveMs > 0 ? Math.min(serverKeepAliveMs, this.keepAliveMs) : this.keepAliveMs;
+    }
+
+}
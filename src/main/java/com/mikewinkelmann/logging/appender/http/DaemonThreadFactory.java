@@ -0,0 +1,27 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the numbered daemon threads an appender owns, so they never keep the JVM from exiting.
+ *
+ * @author Mike Winkelmann
+ */
+class DaemonThreadFactory implements ThreadFactory {
+
+    private final String namePrefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DaemonThreadFactory(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, this.namePrefix + this.count.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+}
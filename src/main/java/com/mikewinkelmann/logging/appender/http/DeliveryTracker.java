@@ -0,0 +1,138 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.mikewinkelmann.logging.appender.http.queue.PersistentEventQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks the requests of one worker until they succeeded or failed for good.
+ * <p>
+ * Commits a {@link PersistentEventQueue} only up to the events whose request was delivered. The ASYNC and VIRTUAL
+ * engines complete requests out of order, so a position is committed once every request taken before it was
+ * delivered as well. Once a request failed for good, the worker rewinds the queue to the last committed position
+ * with {@link #rewindIfFailed()} and sends the events of the failed request and all later ones again.
+ * <p>
+ * A sequential tracker keeps the events of a worker in order with the ASYNC and VIRTUAL engines: {@link #taken()}
+ * waits until the previous request of the worker completed, including its retries.
+ *
+ * @author Mike Winkelmann
+ */
+class DeliveryTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryTracker.class);
+
+    /**
+     * Delivery of events which are not persisted, completing it has no effect.
+     */
+    static final Delivery NONE = new Delivery(null, 0, -1);
+
+    private final PersistentEventQueue queue;
+    private final boolean sequential;
+    private final Deque<Delivery> pending = new ArrayDeque<Delivery>();
+    private int generation;
+    private boolean failed;
+    private boolean sending;
+
+    /**
+     * @param queue      the persistent queue of the worker, null if its events are not persisted
+     * @param sequential true if a request may only be sent once the previous one completed
+     */
+    DeliveryTracker(PersistentEventQueue queue, boolean sequential) {
+        this.queue = queue;
+        this.sequential = sequential;
+    }
+
+    /**
+     * Called by the worker after it took the events of one request from its queue, before it sends them.
+     */
+    synchronized Delivery taken() throws InterruptedException {
+        while (this.sending)
+            this.wait();
+        // events taken after a failure are taken again after the rewind
+        boolean committed = this.queue != null && !this.failed;
+        if (!committed && !this.sequential)
+            return NONE;
+        Delivery delivery = new Delivery(this, this.generation, committed ? this.queue.position() : -1);
+        if (committed)
+            this.pending.addLast(delivery);
+        this.sending = this.sequential;
+        return delivery;
+    }
+
+    /**
+     * Called by the worker before it takes further events. After a request failed for good, moves the read position
+     * of the queue back to the last committed position, so the failed events are taken again. Requests still in
+     * flight complete without effect, their events are taken again as well.
+     *
+     * @return true if the queue was rewound
+     */
+    synchronized boolean rewindIfFailed() {
+        if (!this.failed)
+            return false;
+        this.failed = false;
+        this.generation++;
+        this.queue.rewind();
+        return true;
+    }
+
+    private synchronized void completed(Delivery delivery, boolean delivered) {
+        if (this.sending) {
+            // a sequential worker has only this request outstanding
+            this.sending = false;
+            this.notifyAll();
+        }
+        if (delivery.position < 0 || this.failed || delivery.generation != this.generation)
+            return;
+        if (!delivered) {
+            this.failed = true;
+            this.pending.clear();
+            logger.warn("Delivery to the endpoint failed, the persisted events are sent again");
+            return;
+        }
+        delivery.delivered = true;
+        long position = -1;
+        while (!this.pending.isEmpty() && this.pending.getFirst().delivered)
+            position = this.pending.removeFirst().position;
+        if (position >= 0)
+            this.queue.commit(position);
+    }
+
+    /**
+     * The events of one request. Only the first completion counts, every request has to be completed once it
+     * succeeded or failed for good, or was abandoned.
+     */
+    static final class Delivery {
+
+        private final DeliveryTracker tracker;
+        private final int generation;
+        // -1 if the events are not committed
+        private final long position;
+        private boolean completed;
+        private boolean delivered;
+
+        private Delivery(DeliveryTracker tracker, int generation, long position) {
+            this.tracker = tracker;
+            this.generation = generation;
+            this.position = position;
+        }
+
+        /**
+         * @param delivered true if the endpoint accepted or finally rejected the events, false if they could not
+         *                  be delivered and have to be sent again
+         */
+        void completed(boolean delivered) {
+            if (this.tracker == null)
+                return;
+            synchronized (this.tracker) {
+                if (this.completed)
+                    return;
+                this.completed = true;
+                this.tracker.completed(this, delivered);
+            }
+        }
+    }
+
+}
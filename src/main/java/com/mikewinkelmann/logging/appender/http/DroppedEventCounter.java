@@ -0,0 +1,43 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import ch.qos.logback.classic.Level;
+import com.mikewinkelmann.logging.appender.LoggingLevel;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts dropped events per {@link LoggingLevel} since the last report.
+ * The totals are kept by {@link com.mikewinkelmann.logging.appender.http.metrics.AppenderMetrics}.
+ *
+ * @author Mike Winkelmann
+ */
+class DroppedEventCounter {
+
+    private static final LoggingLevel[] LEVELS = LoggingLevel.values();
+
+    private final LongAdder[] unreported = new LongAdder[LEVELS.length];
+
+    DroppedEventCounter() {
+        for (int i = 0; i < this.unreported.length; i++)
+            this.unreported[i] = new LongAdder();
+    }
+
+    void increment(Level level) {
+        this.unreported[LoggingLevel.of(level).ordinal()].increment();
+    }
+
+    /**
+     * Resets the counters since the last report and describes them, or returns null if nothing was dropped.
+     */
+    String report() {
+        long sum = 0;
+        StringBuilder levels = new StringBuilder();
+        for (int i = 0; i < LEVELS.length; i++) {
+            long dropped = this.unreported[i].sumThenReset();
+            sum += dropped;
+            levels.append(i == 0 ? "" : ", ").append(LEVELS[i]).append('=').append(dropped);
+        }
+        return sum > 0 ? sum + " events dropped (" + levels + ")" : null;
+    }
+
+}
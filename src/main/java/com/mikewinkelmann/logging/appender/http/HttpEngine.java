@@ -0,0 +1,27 @@
+package com.mikewinkelmann.logging.appender.http;
+
+/**
+ * Enum for all supported engines executing the requests of an {@link AbstractHttpAppender}.
+ *
+ * @author Mike Winkelmann
+ */
+public enum HttpEngine {
+
+    /**
+     * The worker executes one request after the other and waits for each response.
+     */
+    BLOCKING,
+
+    /**
+     * The worker hands requests to a non-blocking client and keeps up to {@code maxInFlight} of them running.
+     * Requires the optional {@code httpasyncclient} dependency.
+     */
+    ASYNC,
+
+    /**
+     * The workers and every request run on virtual threads, up to {@code maxInFlight} blocking requests at once.
+     * Requires Java 21, older versions fall back to {@link #BLOCKING}.
+     */
+    VIRTUAL
+
+}
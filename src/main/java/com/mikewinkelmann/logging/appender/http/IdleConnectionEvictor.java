@@ -0,0 +1,36 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import org.apache.http.conn.HttpClientConnectionManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes expired connections and connections idle for longer than {@code idleTimeoutMs}, so the worker never
+ * leases a connection the server has already dropped. Runs periodically on the scheduler of the appender.
+ *
+ * @author Mike Winkelmann
+ */
+class IdleConnectionEvictor implements Runnable {
+
+    private final HttpClientConnectionManager connectionManager;
+    private final long idleTimeoutMs;
+
+    IdleConnectionEvictor(HttpClientConnectionManager connectionManager, long idleTimeoutMs) {
+        this.connectionManager = connectionManager;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * @return the interval the eviction should run at
+     */
+    long getIntervalMs() {
+        return Math.max(this.idleTimeoutMs / 2, 1);
+    }
+
+    @Override
+    public void run() {
+        this.connectionManager.closeExpiredConnections();
+        this.connectionManager.closeIdleConnections(this.idleTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Enum for all supported keys deciding which worker of an {@link AbstractHttpAppender} sends an event.
+ * Events with the same key are sent in the order they were logged.
+ *
+ * @author Mike Winkelmann
+ */
+public enum OrderingKey {
+
+    NONE {
+        @Override
+        String keyOf(ILoggingEvent event, String mdcKey) {
+            return null;
+        }
+    },
+
+    LOGGER {
+        @Override
+        String keyOf(ILoggingEvent event, String mdcKey) {
+            return event.getLoggerName();
+        }
+    },
+
+    THREAD {
+        @Override
+        String keyOf(ILoggingEvent event, String mdcKey) {
+            return event.getThreadName();
+        }
+    },
+
+    MDC {
+        @Override
+        String keyOf(ILoggingEvent event, String mdcKey) {
+            return event.getMDCPropertyMap().get(mdcKey);
+        }
+    };
+
+    abstract String keyOf(ILoggingEvent event, String mdcKey);
+
+}
@@ -0,0 +1,31 @@
+package com.mikewinkelmann.logging.appender.http;
+
+/**
+ * Enum for all supported policies of an {@link AbstractHttpAppender} if the queue of a worker is full.
+ *
+ * @author Mike Winkelmann
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The new event is dropped.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest queued event is dropped to make room for the new one. Requires the ARRAY queue type.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Events below {@code overflowLevel} are dropped as soon as the queue is filled up to its reserved capacity,
+     * so the rest of the queue stays free for the more important events.
+     */
+    DROP_BELOW_LEVEL,
+
+    /**
+     * The logging thread waits up to {@code overflowTimeoutMs} for free space before the new event is dropped.
+     */
+    BLOCK
+
+}
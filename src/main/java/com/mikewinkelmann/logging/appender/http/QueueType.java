@@ -0,0 +1,29 @@
+package com.mikewinkelmann.logging.appender.http;
+
+/**
+ * Enum for all supported queue implementations between {@code append()} and the workers of an
+ * {@link AbstractHttpAppender}.
+ *
+ * @author Mike Winkelmann
+ */
+public enum QueueType {
+
+    /**
+     * {@link java.util.concurrent.ArrayBlockingQueue}, or a {@link java.util.concurrent.SynchronousQueue}
+     * if the queue size is 0. Producers share one lock.
+     */
+    ARRAY,
+
+    /**
+     * Lock-free {@link com.mikewinkelmann.logging.appender.http.queue.RingBufferQueue}, the queue size
+     * is rounded up to the next power of two.
+     */
+    RING_BUFFER,
+
+    /**
+     * Durable {@link com.mikewinkelmann.logging.appender.http.queue.PersistentEventQueue} in memory-mapped files
+     * below {@code persistenceDirectory}, bounded by disk space instead of the queue size.
+     */
+    PERSISTENT
+
+}
@@ -0,0 +1,65 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket allowing {@code permitsPerSecond} on average and bursts of up to {@code burst} permits.
+ * <p>
+ * Instead of a token count the bucket keeps the theoretical time at which it would be full again
+ * (generic cell rate algorithm), so taking a permit is a single compare-and-set.
+ *
+ * @author Mike Winkelmann
+ */
+class RateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+    RateLimiter(double permitsPerSecond, int burst) {
+        Preconditions.checkArgument(permitsPerSecond > 0 && !Double.isInfinite(permitsPerSecond),
+                "Permits per second must be positive and finite");
+        Preconditions.checkArgument(burst > 0, "Burst must be positive");
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = this.intervalNanos * burst;
+    }
+
+    /**
+     * Takes a permit if one is available.
+     *
+     * @return 0 if a permit was taken, otherwise the time in nanoseconds until the next permit is available
+     */
+    long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = this.fullAt.get();
+            long next = Math.max(current, now) + this.intervalNanos;
+            long excess = next - now - this.toleranceNanos;
+            if (excess > 0)
+                return excess;
+            if (this.fullAt.compareAndSet(current, next))
+                return 0;
+        }
+    }
+
+    /**
+     * Waits up to the timeout for a permit.
+     *
+     * @return true if a permit was taken
+     */
+    boolean tryAcquire(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (long wait = this.tryAcquire(); wait > 0; wait = this.tryAcquire()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || Thread.currentThread().isInterrupted())
+                return false;
+            LockSupport.parkNanos(Math.min(wait, remaining));
+        }
+        return true;
+    }
+
+}
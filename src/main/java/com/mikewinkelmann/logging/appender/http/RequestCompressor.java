@@ -0,0 +1,141 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.entity.ByteArrayEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the bodies of the requests of one worker. The {@link Deflater} and the buffers are reused for
+ * every request, so only the compressed body is allocated. Buffers grown beyond
+ * {@link #MAX_RETAINED_BUFFER_SIZE} for a large body are released afterwards, so a single large request does not
+ * pin their memory. Not thread-safe, every worker owns its own instance and has to {@link #end()} it when it stops.
+ *
+ * @author Mike Winkelmann
+ */
+class RequestCompressor {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+    private final Compression compression;
+    private final int minSize;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final Buffer content = new Buffer();
+    private byte[] compressed = new byte[INITIAL_BUFFER_SIZE];
+
+    RequestCompressor(Compression compression, int minSize) {
+        this.compression = compression;
+        this.minSize = minSize;
+        // gzip wraps the raw deflate stream with its own header and trailer
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, compression == Compression.GZIP);
+    }
+
+    /**
+     * Replaces the body of the request by a compressed copy if it is at least {@code minSize} bytes large.
+     * Bodies with a known length below the threshold and bodies already carrying a content encoding are left as they are.
+     */
+    void compress(HttpRequest request) throws IOException {
+        if (!(request instanceof HttpEntityEnclosingRequest))
+            return;
+        HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) request;
+        HttpEntity entity = enclosingRequest.getEntity();
+        if (entity == null || entity.getContentEncoding() != null
+                || (entity.getContentLength() >= 0 && entity.getContentLength() < this.minSize))
+            return;
+
+        final ByteArrayEntity compressedEntity;
+        try {
+            entity.writeTo(this.content);
+            if (this.content.size() < this.minSize) {
+                // the length was unknown up front, the body is consumed now and has to be replaced anyway
+                compressedEntity = new ByteArrayEntity(this.content.toByteArray());
+            } else {
+                compressedEntity = new ByteArrayEntity(this.deflate());
+                compressedEntity.setContentEncoding(this.compression.getContentEncoding());
+            }
+        } finally {
+            this.content.release();
+            if (this.compressed.length > MAX_RETAINED_BUFFER_SIZE)
+                this.compressed = new byte[INITIAL_BUFFER_SIZE];
+        }
+        compressedEntity.setContentType(entity.getContentType());
+        enclosingRequest.setEntity(compressedEntity);
+    }
+
+    private byte[] deflate() {
+        byte[] input = this.content.array();
+        int length = this.content.size();
+        int position = 0;
+        if (this.compression == Compression.GZIP) {
+            System.arraycopy(GZIP_HEADER, 0, this.compressed, 0, GZIP_HEADER.length);
+            position = GZIP_HEADER.length;
+        }
+        this.deflater.reset();
+        this.deflater.setInput(input, 0, length);
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            if (position == this.compressed.length)
+                this.compressed = Arrays.copyOf(this.compressed, this.compressed.length * 2);
+            position += this.deflater.deflate(this.compressed, position, this.compressed.length - position);
+        }
+        if (this.compression == Compression.GZIP) {
+            this.crc.reset();
+            this.crc.update(input, 0, length);
+            if (position + GZIP_TRAILER_SIZE > this.compressed.length)
+                this.compressed = Arrays.copyOf(this.compressed, position + GZIP_TRAILER_SIZE);
+            position = writeIntLE(this.compressed, position, (int) this.crc.getValue());
+            position = writeIntLE(this.compressed, position, length);
+        }
+        return Arrays.copyOf(this.compressed, position);
+    }
+
+    private static int writeIntLE(byte[] target, int position, int value) {
+        target[position] = (byte) value;
+        target[position + 1] = (byte) (value >>> 8);
+        target[position + 2] = (byte) (value >>> 16);
+        target[position + 3] = (byte) (value >>> 24);
+        return position + 4;
+    }
+
+    /**
+     * Releases the native memory of the deflater.
+     */
+    void end() {
+        this.deflater.end();
+    }
+
+    /**
+     * Gives access to the internal array to avoid a copy of the uncompressed body.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        private Buffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        private byte[] array() {
+            return this.buf;
+        }
+
+        /**
+         * Empties the buffer and shrinks it back to its initial size if it grew too large.
+         */
+        private void release() {
+            this.reset();
+            if (this.buf.length > MAX_RETAINED_BUFFER_SIZE)
+                this.buf = new byte[INITIAL_BUFFER_SIZE];
+        }
+
+    }
+
+}
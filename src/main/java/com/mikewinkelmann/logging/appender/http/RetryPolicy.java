@@ -0,0 +1,124 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.google.common.base.Splitter;
+import com.mikewinkelmann.logging.appender.http.exception.HttpStatusException;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+
+import java.util.BitSet;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a failed request is sent again and how long to wait before.
+ * <p>
+ * I/O failures and responses with one of the configured status codes are retried. The delay grows exponentially
+ * with the attempt and half of it is random, so workers of many nodes do not retry in lockstep.
+ * All retries of an appender share a budget: every request adds {@code budgetPercent / 100} retries to it,
+ * up to {@link AbstractHttpAppenderConfig#RETRY_BUDGET_MAX_TOKENS}. If it is used up, failed requests are no
+ * longer retried, so retries cannot multiply the load on an endpoint that fails for most requests.
+ *
+ * @author Mike Winkelmann
+ */
+class RetryPolicy {
+
+    private static final long TOKEN = 1000;
+
+    private final int maxRetries;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long depositPerRequest;
+    private final BitSet retryStatusCodes = new BitSet();
+    private final AtomicLong budget = new AtomicLong(AbstractHttpAppenderConfig.RETRY_BUDGET_MAX_TOKENS * TOKEN);
+
+    /**
+     * @param retryStatusCodes comma separated list of status codes to retry
+     */
+    RetryPolicy(int maxRetries, long initialBackoffMs, long maxBackoffMs, int budgetPercent, String retryStatusCodes) {
+        this.maxRetries = maxRetries;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.depositPerRequest = budgetPercent * TOKEN / 100;
+        for (String statusCode : Splitter.on(',').trimResults().omitEmptyStrings().split(retryStatusCodes))
+            this.retryStatusCodes.set(Integer.parseInt(statusCode));
+    }
+
+    /**
+     * Failures without a status code are I/O failures and always retryable.
+     */
+    boolean isRetryable(Exception failure) {
+        if (failure instanceof HttpStatusException)
+            return this.retryStatusCodes.get(Math.max(((HttpStatusException) failure).getStatusCode(), 0));
+        return true;
+    }
+
+    /**
+     * Called once for every new request, adds to the retry budget.
+     */
+    void onRequest() {
+        final long max = AbstractHttpAppenderConfig.RETRY_BUDGET_MAX_TOKENS * TOKEN;
+        while (true) {
+            long current = this.budget.get();
+            if (current >= max || this.budget.compareAndSet(current, Math.min(max, current + this.depositPerRequest)))
+                return;
+        }
+    }
+
+    /**
+     * @param attempt the number of retries already made for the request
+     * @return true if the request may be sent again, takes one retry from the budget
+     */
+    boolean tryRetry(int attempt) {
+        if (attempt >= this.maxRetries)
+            return false;
+        while (true) {
+            long current = this.budget.get();
+            if (current < TOKEN)
+                return false;
+            if (this.budget.compareAndSet(current, current - TOKEN))
+                return true;
+        }
+    }
+
+    /**
+     * @param attempt the number of retries already made for the request
+     */
+    long backoffMs(int attempt) {
+        long backoff = Math.min(this.maxBackoffMs, this.initialBackoffMs << Math.min(attempt, 30));
+        long half = backoff / 2;
+        return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+    }
+
+    /**
+     * @return the delay before the events of a request which failed after all retries are sent again
+     */
+    long redeliveryBackoffMs() {
+        return this.backoffMs(this.maxRetries);
+    }
+
+    /**
+     * Parses the {@code Retry-After} header given as seconds or http date.
+     *
+     * @return the requested delay in milliseconds, at most {@link AbstractHttpAppenderConfig#MAX_RETRY_AFTER_MS},
+     * 0 if the response has no valid header
+     */
+    static long retryAfterMs(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null || header.getValue() == null)
+            return 0;
+        String value = header.getValue().trim();
+        long delay;
+        try {
+            delay = Long.parseLong(value) * 1000;
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            if (date == null)
+                return 0;
+            delay = date.getTime() - System.currentTimeMillis();
+        }
+        return Math.max(0, Math.min(delay, AbstractHttpAppenderConfig.MAX_RETRY_AFTER_MS));
+    }
+
+}
@@ -0,0 +1,283 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.google.common.base.Preconditions;
+import com.mikewinkelmann.logging.appender.LoggingLevel;
+import org.apache.http.client.config.RequestConfig;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Immutable snapshot of the settings which can be changed while the appender runs. The appender reads the
+ * current snapshot once per event or batch, a reconfiguration replaces it as a whole, so readers never see
+ * a half applied change.
+ *
+ * @author Mike Winkelmann
+ */
+final class RuntimeConfig {
+
+    static final String LOGGING_LEVELS = "loggingLevels";
+    static final String REQUEST_URL = "requestUrl";
+    static final String CONNECT_TIMEOUT = "connectTimeout";
+    static final String SOCKET_TIMEOUT = "socketTimeout";
+    static final String CONNECTION_REQUEST_TIMEOUT = "connectionRequestTimeout";
+    static final String MAX_BATCH_SIZE = "maxBatchSize";
+    static final String MAX_BATCH_BYTES = "maxBatchBytes";
+    static final String LINGER_MS = "lingerMs";
+    static final String RATE_LIMIT = "rateLimit";
+    static final String RATE_LIMIT_BURST = "rateLimitBurst";
+    static final String LEVEL_RATE_LIMITS = "levelRateLimits";
+    /**
+     * Rate of a level without its own limit, which falls back to the rate limit.
+     */
+    static final double UNSET_RATE = -1;
+
+    private final int levelMask;
+    private final String requestUrl;
+    private final int connectTimeout, socketTimeout, connectionRequestTimeout;
+    private final boolean staleConnectionCheck;
+    private final RequestConfig requestConfig;
+    private final int maxBatchSize, maxBatchBytes;
+    private final long lingerMs;
+    private final double rateLimit;
+    private final int rateLimitBurst;
+    private final double[] levelRateLimits;
+    private final int[] levelRateLimitBursts;
+    private final RateLimiter[] rateLimiters;
+
+    /**
+     * @param rateLimiters the limiters of the previous snapshot, kept with their state if no rate changed,
+     *                     null to create new ones
+     */
+    RuntimeConfig(int levelMask, String requestUrl, int connectTimeout, int socketTimeout,
+                  int connectionRequestTimeout, boolean staleConnectionCheck, int maxBatchSize, int maxBatchBytes,
+                  long lingerMs, double rateLimit, int rateLimitBurst, double[] levelRateLimits,
+                  int[] levelRateLimitBursts, RateLimiter[] rateLimiters) {
+        Preconditions.checkNotNull(requestUrl, "RequestUrl must not be null");
+        Preconditions.checkArgument(connectTimeout >= 0, "Connect timeout must be non negative");
+        Preconditions.checkArgument(socketTimeout >= 0, "Socket timeout must be non negative");
+        Preconditions.checkArgument(connectionRequestTimeout >= 0, "Connection request timeout must be non negative");
+        Preconditions.checkArgument(maxBatchSize > 0, "Max batch size must be positive");
+        Preconditions.checkArgument(maxBatchBytes > 0, "Max batch bytes must be positive");
+        Preconditions.checkArgument(lingerMs >= 0, "Linger ms must be non negative");
+        Preconditions.checkArgument(rateLimit >= 0 && !Double.isInfinite(rateLimit),
+                "Rate limit must be non negative and finite");
+        Preconditions.checkArgument(rateLimitBurst >= 0, "Rate limit burst must be non negative");
+        for (LoggingLevel level : LoggingLevel.values()) {
+            double levelRate = levelRateLimits[level.ordinal()];
+            Preconditions.checkArgument(levelRate == UNSET_RATE || levelRate >= 0 && !Double.isInfinite(levelRate),
+                    "Rate limit of level " + level + " must be non negative and finite");
+            Preconditions.checkArgument(levelRateLimitBursts[level.ordinal()] >= 0,
+                    "Rate limit burst of level " + level + " must be non negative");
+        }
+        this.levelMask = levelMask;
+        this.requestUrl = requestUrl;
+        this.connectTimeout = connectTimeout;
+        this.socketTimeout = socketTimeout;
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        this.staleConnectionCheck = staleConnectionCheck;
+        this.requestConfig = RequestConfig.custom()
+                .setSocketTimeout(socketTimeout)
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .setStaleConnectionCheckEnabled(staleConnectionCheck)
+                .build();
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerMs = lingerMs;
+        this.rateLimit = rateLimit;
+        this.rateLimitBurst = rateLimitBurst;
+        this.levelRateLimits = levelRateLimits.clone();
+        this.levelRateLimitBursts = levelRateLimitBursts.clone();
+        this.rateLimiters = rateLimiters != null ? rateLimiters : this.createRateLimiters();
+    }
+
+    /**
+     * Returns a new snapshot with the given properties applied. Properties not given keep their current value.
+     *
+     * @throws IllegalArgumentException if a value is invalid, nothing is applied then
+     */
+    RuntimeConfig with(Properties properties) {
+        int levelMask = this.levelMask;
+        String levels = trimmed(properties, LOGGING_LEVELS);
+        if (levels != null) {
+            levelMask = 0;
+            for (String level : levels.split(","))
+                if (level.trim().length() > 0)
+                    levelMask |= levelBit(level);
+        }
+        double rateLimit = doubleValue(properties, RATE_LIMIT, this.rateLimit);
+        int rateLimitBurst = intValue(properties, RATE_LIMIT_BURST, this.rateLimitBurst);
+        double[] levelRateLimits = this.levelRateLimits.clone();
+        int[] levelRateLimitBursts = this.levelRateLimitBursts.clone();
+        String levelRates = trimmed(properties, LEVEL_RATE_LIMITS);
+        if (levelRates != null) {
+            // the given list replaces all limits per level
+            Arrays.fill(levelRateLimits, UNSET_RATE);
+            Arrays.fill(levelRateLimitBursts, 0);
+            for (String levelRate : levelRates.split(","))
+                if (levelRate.trim().length() > 0)
+                    parseLevelRateLimit(levelRate, levelRateLimits, levelRateLimitBursts);
+        }
+        boolean ratesChanged = rateLimit != this.rateLimit || rateLimitBurst != this.rateLimitBurst
+                || !Arrays.equals(levelRateLimits, this.levelRateLimits)
+                || !Arrays.equals(levelRateLimitBursts, this.levelRateLimitBursts);
+        String requestUrl = trimmed(properties, REQUEST_URL);
+        return new RuntimeConfig(levelMask,
+                requestUrl != null ? requestUrl : this.requestUrl,
+                intValue(properties, CONNECT_TIMEOUT, this.connectTimeout),
+                intValue(properties, SOCKET_TIMEOUT, this.socketTimeout),
+                intValue(properties, CONNECTION_REQUEST_TIMEOUT, this.connectionRequestTimeout),
+                this.staleConnectionCheck,
+                intValue(properties, MAX_BATCH_SIZE, this.maxBatchSize),
+                intValue(properties, MAX_BATCH_BYTES, this.maxBatchBytes),
+                longValue(properties, LINGER_MS, this.lingerMs),
+                rateLimit, rateLimitBurst, levelRateLimits, levelRateLimitBursts,
+                ratesChanged ? null : this.rateLimiters);
+    }
+
+    /**
+     * One bit per {@link LoggingLevel}, checked before an event is enqueued.
+     */
+    boolean isLevelEnabled(LoggingLevel level) {
+        return (this.levelMask & (1 << level.ordinal())) != 0;
+    }
+
+    /**
+     * @return the limiter of the level, null if the level is not limited
+     */
+    RateLimiter getRateLimiter(LoggingLevel level) {
+        return this.rateLimiters[level.ordinal()];
+    }
+
+    RequestConfig getRequestConfig() {
+        return this.requestConfig;
+    }
+
+    String getRequestUrl() {
+        return this.requestUrl;
+    }
+
+    int getMaxBatchSize() {
+        return this.maxBatchSize;
+    }
+
+    int getMaxBatchBytes() {
+        return this.maxBatchBytes;
+    }
+
+    long getLingerMs() {
+        return this.lingerMs;
+    }
+
+    int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    int getSocketTimeout() {
+        return this.socketTimeout;
+    }
+
+    int getConnectionRequestTimeout() {
+        return this.connectionRequestTimeout;
+    }
+
+    double getRateLimit() {
+        return this.rateLimit;
+    }
+
+    int getRateLimitBurst() {
+        return this.rateLimitBurst;
+    }
+
+    /**
+     * @return the enabled levels, e.g. {@code ERROR,WARN}
+     */
+    String getLoggingLevels() {
+        StringBuilder levels = new StringBuilder();
+        for (LoggingLevel level : LoggingLevel.values()) {
+            if (this.isLevelEnabled(level))
+                levels.append(levels.length() > 0 ? "," : "").append(level);
+        }
+        return levels.toString();
+    }
+
+    /**
+     * @return the limits per level in the format of {@code levelRateLimit}, e.g. {@code ERROR:10,INFO:100:500}
+     */
+    String getLevelRateLimits() {
+        StringBuilder limits = new StringBuilder();
+        for (LoggingLevel level : LoggingLevel.values()) {
+            int index = level.ordinal();
+            if (this.levelRateLimits[index] < 0)
+                continue;
+            limits.append(limits.length() > 0 ? "," : "").append(level).append(':').append(this.levelRateLimits[index]);
+            if (this.levelRateLimitBursts[index] > 0)
+                limits.append(':').append(this.levelRateLimitBursts[index]);
+        }
+        return limits.toString();
+    }
+
+    /**
+     * Every level gets its own bucket, so a flood of INFO events cannot use up the permits of ERROR events.
+     * Levels without a rate are not limited.
+     */
+    private RateLimiter[] createRateLimiters() {
+        RateLimiter[] limiters = new RateLimiter[LoggingLevel.values().length];
+        for (int i = 0; i < limiters.length; i++) {
+            double rate = this.levelRateLimits[i] >= 0 ? this.levelRateLimits[i] : this.rateLimit;
+            int burst = this.levelRateLimitBursts[i] > 0 ? this.levelRateLimitBursts[i] : this.rateLimitBurst;
+            if (rate > 0)
+                limiters[i] = new RateLimiter(rate, burst > 0 ? burst : (int) Math.max(1, Math.ceil(rate)));
+        }
+        return limiters;
+    }
+
+    static int levelBit(String state) {
+        if (state == null || state.trim().length() <= 0) {
+            throw new IllegalArgumentException("null, empty or not the right <LoggingLevel> property. States: "
+                    + Arrays.toString(LoggingLevel.values()));
+        }
+        return 1 << LoggingLevel.valueOf(state.trim().toUpperCase()).ordinal();
+    }
+
+    /**
+     * Parses {@code LEVEL:rate[:burst]} into the arrays indexed by {@link LoggingLevel#ordinal()}.
+     */
+    static void parseLevelRateLimit(String levelRateLimit, double[] levelRateLimits, int[] levelRateLimitBursts) {
+        String[] parts = levelRateLimit != null ? levelRateLimit.split(":") : new String[0];
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("null, empty or not the right <levelRateLimit> property. "
+                    + "Format: LEVEL:rate[:burst], levels: " + Arrays.toString(LoggingLevel.values()));
+        }
+        int index = LoggingLevel.valueOf(parts[0].trim().toUpperCase()).ordinal();
+        double rate = Double.parseDouble(parts[1].trim());
+        int burst = parts.length == 3 ? Integer.parseInt(parts[2].trim()) : 0;
+        Preconditions.checkArgument(rate >= 0 && !Double.isInfinite(rate),
+                "Rate limit of level " + parts[0].trim() + " must be non negative and finite");
+        Preconditions.checkArgument(burst >= 0, "Rate limit burst of level " + parts[0].trim() + " must be non negative");
+        levelRateLimits[index] = rate;
+        levelRateLimitBursts[index] = burst;
+    }
+
+    private static String trimmed(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        return value != null ? value.trim() : null;
+    }
+
+    private static int intValue(Properties properties, String key, int current) {
+        String value = trimmed(properties, key);
+        return value != null ? Integer.parseInt(value) : current;
+    }
+
+    private static long longValue(Properties properties, String key, long current) {
+        String value = trimmed(properties, key);
+        return value != null ? Long.parseLong(value) : current;
+    }
+
+    private static double doubleValue(Properties properties, String key, double current) {
+        String value = trimmed(properties, key);
+        return value != null ? Double.parseDouble(value) : current;
+    }
+
+}
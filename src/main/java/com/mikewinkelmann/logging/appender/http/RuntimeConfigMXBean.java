@@ -0,0 +1,64 @@
+package com.mikewinkelmann.logging.appender.http;
+
+/**
+ * Management interface to change the settings of a running appender. Every setter is applied atomically,
+ * invalid values are rejected with an {@link IllegalArgumentException} and leave the settings unchanged.
+ *
+ * @author Mike Winkelmann
+ */
+public interface RuntimeConfigMXBean {
+
+    /**
+     * @return the enabled levels, e.g. {@code ERROR,WARN}
+     */
+    String getLoggingLevels();
+
+    void setLoggingLevels(String loggingLevels);
+
+    String getRequestUrl();
+
+    void setRequestUrl(String requestUrl);
+
+    int getConnectTimeout();
+
+    void setConnectTimeout(int connectTimeout);
+
+    int getSocketTimeout();
+
+    void setSocketTimeout(int socketTimeout);
+
+    int getConnectionRequestTimeout();
+
+    void setConnectionRequestTimeout(int connectionRequestTimeout);
+
+    int getMaxBatchSize();
+
+    void setMaxBatchSize(int maxBatchSize);
+
+    int getMaxBatchBytes();
+
+    void setMaxBatchBytes(int maxBatchBytes);
+
+    long getLingerMs();
+
+    void setLingerMs(long lingerMs);
+
+    double getRateLimit();
+
+    void setRateLimit(double rateLimit);
+
+    int getRateLimitBurst();
+
+    void setRateLimitBurst(int rateLimitBurst);
+
+    /**
+     * @return the limits per level, e.g. {@code ERROR:10,INFO:100:500}
+     */
+    String getLevelRateLimits();
+
+    /**
+     * Replaces all limits per level, an empty value removes them.
+     */
+    void setLevelRateLimits(String levelRateLimits);
+
+}
@@ -0,0 +1,198 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+/**
+ * Holds the current {@link RuntimeConfig} of a running appender and swaps it on reconfiguration. Reading is a
+ * single volatile read, writers are serialized, so concurrent changes from JMX and the reload file cannot
+ * overwrite each other. Queued events, workers and pooled connections stay as they are.
+ *
+ * @author Mike Winkelmann
+ */
+class RuntimeConfigurator implements RuntimeConfigMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RuntimeConfigurator.class);
+
+    private static final String DOMAIN = "com.mikewinkelmann.logging";
+
+    private final String appenderName;
+    private volatile RuntimeConfig config;
+    private ObjectName objectName;
+
+    RuntimeConfigurator(String appenderName, RuntimeConfig config) {
+        this.appenderName = appenderName;
+        this.config = config;
+    }
+
+    RuntimeConfig get() {
+        return this.config;
+    }
+
+    /**
+     * Applies the given properties, properties not given keep their value.
+     *
+     * @throws IllegalArgumentException if a value is invalid, nothing is applied then
+     */
+    synchronized void reconfigure(Properties properties) {
+        if (properties.isEmpty())
+            return;
+        this.config = this.config.with(properties);
+        logger.info("Appender " + this.appenderName + " reconfigured: " + properties);
+    }
+
+    private void reconfigure(String key, Object value) {
+        Properties properties = new Properties();
+        properties.setProperty(key, String.valueOf(value));
+        this.reconfigure(properties);
+    }
+
+    /**
+     * Registers the MXBean at the platform MBean server, named
+     * {@code com.mikewinkelmann.logging:type=HttpAppenderConfig,context=<context>,name=<appender>}.
+     */
+    void register(String contextName) {
+        try {
+            this.objectName = new ObjectName(DOMAIN + ":type=HttpAppenderConfig,context="
+                    + ObjectName.quote(String.valueOf(contextName))
+                    + ",name=" + ObjectName.quote(String.valueOf(this.appenderName)));
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(this.objectName))
+                mBeanServer.unregisterMBean(this.objectName);
+            mBeanServer.registerMBean(this, this.objectName);
+        } catch (JMException e) {
+            logger.warn("Could not register configuration of appender " + this.appenderName, e);
+        }
+    }
+
+    void unregister() {
+        if (this.objectName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (InstanceNotFoundException e) {
+            // already unregistered
+        } catch (JMException e) {
+            logger.warn("Could not unregister configuration of appender " + this.appenderName, e);
+        }
+        this.objectName = null;
+    }
+
+    @Override
+    public String getLoggingLevels() {
+        return this.config.getLoggingLevels();
+    }
+
+    @Override
+    public void setLoggingLevels(String loggingLevels) {
+        this.reconfigure(RuntimeConfig.LOGGING_LEVELS, loggingLevels);
+    }
+
+    @Override
+    public String getRequestUrl() {
+        return this.config.getRequestUrl();
+    }
+
+    @Override
+    public void setRequestUrl(String requestUrl) {
+        this.reconfigure(RuntimeConfig.REQUEST_URL, requestUrl);
+    }
+
+    @Override
+    public int getConnectTimeout() {
+        return this.config.getConnectTimeout();
+    }
+
+    @Override
+    public void setConnectTimeout(int connectTimeout) {
+        this.reconfigure(RuntimeConfig.CONNECT_TIMEOUT, connectTimeout);
+    }
+
+    @Override
+    public int getSocketTimeout() {
+        return this.config.getSocketTimeout();
+    }
+
+    @Override
+    public void setSocketTimeout(int socketTimeout) {
+        this.reconfigure(RuntimeConfig.SOCKET_TIMEOUT, socketTimeout);
+    }
+
+    @Override
+    public int getConnectionRequestTimeout() {
+        return this.config.getConnectionRequestTimeout();
+    }
+
+    @Override
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.reconfigure(RuntimeConfig.CONNECTION_REQUEST_TIMEOUT, connectionRequestTimeout);
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return this.config.getMaxBatchSize();
+    }
+
+    @Override
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.reconfigure(RuntimeConfig.MAX_BATCH_SIZE, maxBatchSize);
+    }
+
+    @Override
+    public int getMaxBatchBytes() {
+        return this.config.getMaxBatchBytes();
+    }
+
+    @Override
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.reconfigure(RuntimeConfig.MAX_BATCH_BYTES, maxBatchBytes);
+    }
+
+    @Override
+    public long getLingerMs() {
+        return this.config.getLingerMs();
+    }
+
+    @Override
+    public void setLingerMs(long lingerMs) {
+        this.reconfigure(RuntimeConfig.LINGER_MS, lingerMs);
+    }
+
+    @Override
+    public double getRateLimit() {
+        return this.config.getRateLimit();
+    }
+
+    @Override
+    public void setRateLimit(double rateLimit) {
+        this.reconfigure(RuntimeConfig.RATE_LIMIT, rateLimit);
+    }
+
+    @Override
+    public int getRateLimitBurst() {
+        return this.config.getRateLimitBurst();
+    }
+
+    @Override
+    public void setRateLimitBurst(int rateLimitBurst) {
+        this.reconfigure(RuntimeConfig.RATE_LIMIT_BURST, rateLimitBurst);
+    }
+
+    @Override
+    public String getLevelRateLimits() {
+        return this.config.getLevelRateLimits();
+    }
+
+    @Override
+    public void setLevelRateLimits(String levelRateLimits) {
+        this.reconfigure(RuntimeConfig.LEVEL_RATE_LIMITS, levelRateLimits);
+    }
+
+}
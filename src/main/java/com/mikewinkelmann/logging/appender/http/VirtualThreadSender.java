@@ -0,0 +1,109 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the workers and every request on its own virtual thread, with a bounded number of requests in flight.
+ * If the limit is reached {@link #send} blocks the calling worker until a request finished, so a slow endpoint
+ * fills the appender queue instead of piling up threads. Virtual threads are created by reflection, because
+ * they require Java 21 while the appender is built for older versions.
+ *
+ * @author Mike Winkelmann
+ */
+class VirtualThreadSender implements Closeable {
+
+    private static final String THREAD_NAME_PREFIX = "http-appender-virtual-";
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    private VirtualThreadSender(ExecutorService executor, int maxInFlight) {
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return the sender, null if the running JVM does not support virtual threads
+     */
+    static VirtualThreadSender create(int maxInFlight) {
+        ExecutorService executor = newVirtualThreadExecutor();
+        return executor != null ? new VirtualThreadSender(executor, maxInFlight) : null;
+    }
+
+    /**
+     * Calls {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory())}.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            // older than Java 21, or a preview version without --enable-preview
+            return null;
+        }
+    }
+
+    /**
+     * The executor the workers are submitted to instead of the logback executor.
+     */
+    ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Runs the blocking request on a new virtual thread, once less than {@code maxInFlight} requests are running.
+     *
+     * @throws RejectedExecutionException if the sender is closed
+     */
+    void send(final Runnable request) throws InterruptedException {
+        this.inFlight.acquire();
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        request.run();
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            this.inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until no request is running anymore.
+     *
+     * @return false if requests were still running when the timeout elapsed
+     */
+    boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        if (!this.inFlight.tryAcquire(this.maxInFlight, timeoutMs, TimeUnit.MILLISECONDS))
+            return false;
+        this.inFlight.release(this.maxInFlight);
+        return true;
+    }
+
+    /**
+     * Interrupts the running requests and workers.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.mikewinkelmann.logging.appender.http.event;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import com.google.common.base.Charsets;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of {@link ILoggingEvent}s, decoded as {@link LoggingEventSnapshot}.
+ * Unlike java serialization of {@code LoggingEventVO} it does not compute caller data.
+ *
+ * @author Mike Winkelmann
+ */
+public final class LoggingEventCodec {
+
+    private static final int VERSION = 1;
+
+    private LoggingEventCodec() {
+    }
+
+    public static byte[] encode(ILoggingEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeLong(event.getTimeStamp());
+        out.writeInt(event.getLevel().levelInt);
+        writeString(out, event.getLoggerName());
+        writeString(out, event.getThreadName());
+        writeString(out, event.getFormattedMessage());
+        Marker marker = event.getMarker();
+        writeString(out, marker != null ? marker.getName() : null);
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        out.writeInt(mdc != null ? mdc.size() : 0);
+        if (mdc != null) {
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+        writeThrowable(out, event.getThrowableProxy());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static LoggingEventSnapshot decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int version = in.readByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported event encoding version " + version);
+        long timeStamp = in.readLong();
+        Level level = Level.toLevel(in.readInt());
+        String loggerName = readString(in);
+        String threadName = readString(in);
+        String formattedMessage = readString(in);
+        String markerName = readString(in);
+        int mdcSize = in.readInt();
+        Map<String, String> mdc = Collections.emptyMap();
+        if (mdcSize > 0) {
+            mdc = new HashMap<String, String>(mdcSize * 2);
+            for (int i = 0; i < mdcSize; i++)
+                mdc.put(readString(in), readString(in));
+        }
+        ThrowableProxySnapshot throwableProxy = readThrowable(in);
+        return new LoggingEventSnapshot(timeStamp, level, loggerName, threadName, formattedMessage, throwableProxy,
+                mdc, markerName != null ? MarkerFactory.getDetachedMarker(markerName) : null);
+    }
+
+    private static void writeThrowable(DataOutputStream out, IThrowableProxy proxy) throws IOException {
+        out.writeBoolean(proxy != null);
+        if (proxy == null)
+            return;
+        writeString(out, proxy.getClassName());
+        writeString(out, proxy.getMessage());
+        out.writeInt(proxy.getCommonFrames());
+        StackTraceElementProxy[] frames = proxy.getStackTraceElementProxyArray();
+        out.writeInt(frames.length);
+        for (StackTraceElementProxy frame : frames) {
+            StackTraceElement element = frame.getStackTraceElement();
+            writeString(out, element.getClassName());
+            writeString(out, element.getMethodName());
+            writeString(out, element.getFileName());
+            out.writeInt(element.getLineNumber());
+        }
+        writeThrowable(out, proxy.getCause());
+        IThrowableProxy[] suppressed = proxy.getSuppressed();
+        out.writeInt(suppressed != null ? suppressed.length : 0);
+        if (suppressed != null) {
+            for (IThrowableProxy suppressedProxy : suppressed)
+                writeThrowable(out, suppressedProxy);
+        }
+    }
+
+    private static ThrowableProxySnapshot readThrowable(DataInputStream in) throws IOException {
+        if (!in.readBoolean())
+            return null;
+        String className = readString(in);
+        String message = readString(in);
+        int commonFrames = in.readInt();
+        StackTraceElementProxy[] frames = new StackTraceElementProxy[in.readInt()];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new StackTraceElementProxy(
+                    new StackTraceElement(readString(in), readString(in), readString(in), in.readInt()));
+        }
+        ThrowableProxySnapshot cause = readThrowable(in);
+        ThrowableProxySnapshot[] suppressed = new ThrowableProxySnapshot[in.readInt()];
+        for (int i = 0; i < suppressed.length; i++)
+            suppressed[i] = readThrowable(in);
+        return new ThrowableProxySnapshot(className, message, frames, commonFrames, cause, suppressed);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+}
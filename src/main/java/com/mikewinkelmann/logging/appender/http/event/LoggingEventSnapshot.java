@@ -0,0 +1,146 @@
+package com.mikewinkelmann.logging.appender.http.event;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import org.slf4j.Marker;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the fields of an {@link ILoggingEvent} an http appender needs.
+ * The message is kept formatted, caller data, the argument array and the logger context are not kept,
+ * so a queued snapshot retains far less memory than the original event.
+ *
+ * @author Mike Winkelmann
+ */
+public class LoggingEventSnapshot implements ILoggingEvent, Serializable {
+
+    private static final long serialVersionUID = 9834752093485720L;
+    private static final StackTraceElement[] NO_CALLER_DATA = new StackTraceElement[0];
+
+    private final long timeStamp;
+    private final Level level;
+    private final String loggerName;
+    private final String threadName;
+    private final String formattedMessage;
+    private final ThrowableProxySnapshot throwableProxy;
+    private final Map<String, String> mdcPropertyMap;
+    private final Marker marker;
+
+    /**
+     * Copies the event. Must be called on the logging thread, before the lazily computed fields of the event
+     * (formatted message, throwable proxy, MDC) can change.
+     *
+     * @return the event itself if it already is a snapshot
+     */
+    public static LoggingEventSnapshot of(ILoggingEvent event) {
+        if (event instanceof LoggingEventSnapshot)
+            return (LoggingEventSnapshot) event;
+        return new LoggingEventSnapshot(event.getTimeStamp(), event.getLevel(), event.getLoggerName(),
+                event.getThreadName(), event.getFormattedMessage(),
+                ThrowableProxySnapshot.of(event.getThrowableProxy()), event.getMDCPropertyMap(), event.getMarker());
+    }
+
+    /**
+     * @return a copy of the snapshot with the MDC entry added, or replaced if the key is already set
+     */
+    public LoggingEventSnapshot withMdcProperty(String key, String value) {
+        Map<String, String> mdcPropertyMap = new HashMap<String, String>(this.mdcPropertyMap);
+        mdcPropertyMap.put(key, value);
+        return new LoggingEventSnapshot(this.timeStamp, this.level, this.loggerName, this.threadName,
+                this.formattedMessage, this.throwableProxy, Collections.unmodifiableMap(mdcPropertyMap), this.marker);
+    }
+
+    LoggingEventSnapshot(long timeStamp, Level level, String loggerName, String threadName, String formattedMessage,
+                         ThrowableProxySnapshot throwableProxy, Map<String, String> mdcPropertyMap, Marker marker) {
+        this.timeStamp = timeStamp;
+        this.level = level;
+        this.loggerName = loggerName;
+        this.threadName = threadName;
+        this.formattedMessage = formattedMessage;
+        this.throwableProxy = throwableProxy;
+        this.mdcPropertyMap = mdcPropertyMap != null ? mdcPropertyMap : Collections.<String, String>emptyMap();
+        this.marker = marker;
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return this.timeStamp;
+    }
+
+    @Override
+    public Level getLevel() {
+        return this.level;
+    }
+
+    @Override
+    public String getLoggerName() {
+        return this.loggerName;
+    }
+
+    @Override
+    public String getThreadName() {
+        return this.threadName;
+    }
+
+    @Override
+    public String getMessage() {
+        return this.formattedMessage;
+    }
+
+    @Override
+    public Object[] getArgumentArray() {
+        return null;
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        return this.formattedMessage;
+    }
+
+    @Override
+    public ThrowableProxySnapshot getThrowableProxy() {
+        return this.throwableProxy;
+    }
+
+    @Override
+    public Map<String, String> getMDCPropertyMap() {
+        return this.mdcPropertyMap;
+    }
+
+    @Override
+    @Deprecated
+    public Map<String, String> getMdc() {
+        return this.mdcPropertyMap;
+    }
+
+    @Override
+    public Marker getMarker() {
+        return this.marker;
+    }
+
+    @Override
+    public LoggerContextVO getLoggerContextVO() {
+        return null;
+    }
+
+    @Override
+    public StackTraceElement[] getCallerData() {
+        return NO_CALLER_DATA;
+    }
+
+    @Override
+    public boolean hasCallerData() {
+        return false;
+    }
+
+    @Override
+    public void prepareForDeferredProcessing() {
+        // nothing to do, all fields are already copied
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.mikewinkelmann.logging.appender.http.event;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+
+import java.io.Serializable;
+
+/**
+ * Immutable copy of an {@link IThrowableProxy} which does not reference the original throwable.
+ *
+ * @author Mike Winkelmann
+ */
+public class ThrowableProxySnapshot implements IThrowableProxy, Serializable {
+
+    private static final long serialVersionUID = 2394857123094857L;
+
+    private final String className;
+    private final String message;
+    private final StackTraceElementProxy[] stackTraceElementProxyArray;
+    private final int commonFrames;
+    private final ThrowableProxySnapshot cause;
+    private final ThrowableProxySnapshot[] suppressed;
+
+    /**
+     * Copies the proxy together with its causes and suppressed throwables.
+     *
+     * @return null for null, the proxy itself if it already is a snapshot
+     */
+    public static ThrowableProxySnapshot of(IThrowableProxy proxy) {
+        if (proxy == null)
+            return null;
+        if (proxy instanceof ThrowableProxySnapshot)
+            return (ThrowableProxySnapshot) proxy;
+        IThrowableProxy[] suppressedProxies = proxy.getSuppressed();
+        int suppressedCount = suppressedProxies != null ? suppressedProxies.length : 0;
+        ThrowableProxySnapshot[] suppressed = new ThrowableProxySnapshot[suppressedCount];
+        for (int i = 0; i < suppressedCount; i++)
+            suppressed[i] = of(suppressedProxies[i]);
+        return new ThrowableProxySnapshot(proxy.getClassName(), proxy.getMessage(),
+                proxy.getStackTraceElementProxyArray(), proxy.getCommonFrames(), of(proxy.getCause()), suppressed);
+    }
+
+    ThrowableProxySnapshot(String className, String message, StackTraceElementProxy[] stackTraceElementProxyArray,
+                           int commonFrames, ThrowableProxySnapshot cause, ThrowableProxySnapshot[] suppressed) {
+        this.className = className;
+        this.message = message;
+        this.stackTraceElementProxyArray = stackTraceElementProxyArray;
+        this.commonFrames = commonFrames;
+        this.cause = cause;
+        this.suppressed = suppressed;
+    }
+
+    @Override
+    public String getClassName() {
+        return this.className;
+    }
+
+    @Override
+    public String getMessage() {
+        return this.message;
+    }
+
+    @Override
+    public StackTraceElementProxy[] getStackTraceElementProxyArray() {
+        return this.stackTraceElementProxyArray;
+    }
+
+    @Override
+    public int getCommonFrames() {
+        return this.commonFrames;
+    }
+
+    @Override
+    public ThrowableProxySnapshot getCause() {
+        return this.cause;
+    }
+
+    @Override
+    public ThrowableProxySnapshot[] getSuppressed() {
+        return this.suppressed;
+    }
+
+}
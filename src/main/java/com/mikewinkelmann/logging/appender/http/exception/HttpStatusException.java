@@ -0,0 +1,33 @@
+package com.mikewinkelmann.logging.appender.http.exception;
+
+/**
+ * Http appender exception for a response with a status code outside of the success range.
+ *
+ * @author Mike Winkelmann
+ */
+public class HttpStatusException extends HttpAppenderException {
+
+    private static final long serialVersionUID = 14325894787L;
+
+    private final int statusCode;
+    private final long retryAfterMs;
+
+    /**
+     * @param statusCode   the status code of the response, -1 if none was retrieved
+     * @param retryAfterMs the delay requested by the {@code Retry-After} header, 0 if there is none
+     */
+    public HttpStatusException(final String message, final int statusCode, final long retryAfterMs) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    public long getRetryAfterMs() {
+        return this.retryAfterMs;
+    }
+
+}
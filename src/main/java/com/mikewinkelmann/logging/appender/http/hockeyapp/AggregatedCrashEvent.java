@@ -0,0 +1,160 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import org.slf4j.Marker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Summary of duplicate crashes suppressed by the {@link CrashDeduplicator}. Delegates to the last suppressed event
+ * and adds how often and when the crash occurred.
+ * <p>
+ * The persistent queue only keeps the fields of a plain event, so the MDC of the summary carries the occurrence
+ * count and the first/last seen timestamps as well, and {@link #restore(ILoggingEvent)} rebuilds the summary from
+ * the event read back.
+ *
+ * @author Mike Winkelmann
+ */
+class AggregatedCrashEvent implements ILoggingEvent {
+
+    private static final String OCCURRENCES_KEY = "hockeyapp.occurrences";
+    private static final String FIRST_SEEN_KEY = "hockeyapp.firstSeen";
+    private static final String LAST_SEEN_KEY = "hockeyapp.lastSeen";
+
+    private final ILoggingEvent lastEvent;
+    private final int occurrences;
+    private final long firstSeen;
+    private final long lastSeen;
+
+    AggregatedCrashEvent(ILoggingEvent lastEvent, int occurrences, long firstSeen, long lastSeen) {
+        this.lastEvent = lastEvent;
+        this.occurrences = occurrences;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+    }
+
+    /**
+     * @return the summary the event was encoded from, the crash with its context if it is no summary,
+     * or the event itself
+     */
+    static ILoggingEvent restore(ILoggingEvent event) {
+        if (event instanceof AggregatedCrashEvent || event instanceof CrashContextEvent)
+            return event;
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (mdc == null || !mdc.containsKey(OCCURRENCES_KEY))
+            return CrashContextEvent.restore(event);
+        try {
+            return new AggregatedCrashEvent(CrashContextEvent.restore(event),
+                    Integer.parseInt(mdc.get(OCCURRENCES_KEY)), Long.parseLong(mdc.get(FIRST_SEEN_KEY)),
+                    Long.parseLong(mdc.get(LAST_SEEN_KEY)));
+        } catch (NumberFormatException e) {
+            return CrashContextEvent.restore(event);
+        }
+    }
+
+    ILoggingEvent getLastEvent() {
+        return this.lastEvent;
+    }
+
+    int getOccurrences() {
+        return this.occurrences;
+    }
+
+    long getFirstSeen() {
+        return this.firstSeen;
+    }
+
+    long getLastSeen() {
+        return this.lastSeen;
+    }
+
+    @Override
+    public String getThreadName() {
+        return this.lastEvent.getThreadName();
+    }
+
+    @Override
+    public Level getLevel() {
+        return this.lastEvent.getLevel();
+    }
+
+    @Override
+    public String getMessage() {
+        return this.lastEvent.getMessage();
+    }
+
+    @Override
+    public Object[] getArgumentArray() {
+        return this.lastEvent.getArgumentArray();
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        return this.lastEvent.getFormattedMessage();
+    }
+
+    @Override
+    public String getLoggerName() {
+        return this.lastEvent.getLoggerName();
+    }
+
+    @Override
+    public LoggerContextVO getLoggerContextVO() {
+        return this.lastEvent.getLoggerContextVO();
+    }
+
+    @Override
+    public IThrowableProxy getThrowableProxy() {
+        return this.lastEvent.getThrowableProxy();
+    }
+
+    @Override
+    public StackTraceElement[] getCallerData() {
+        return this.lastEvent.getCallerData();
+    }
+
+    @Override
+    public boolean hasCallerData() {
+        return this.lastEvent.hasCallerData();
+    }
+
+    @Override
+    public Marker getMarker() {
+        return this.lastEvent.getMarker();
+    }
+
+    /**
+     * @return the MDC of the last event with the occurrence count and the first/last seen timestamps
+     */
+    @Override
+    public Map<String, String> getMDCPropertyMap() {
+        Map<String, String> lastMdc = this.lastEvent.getMDCPropertyMap();
+        Map<String, String> mdc = lastMdc != null ? new HashMap<String, String>(lastMdc)
+                : new HashMap<String, String>();
+        mdc.put(OCCURRENCES_KEY, Integer.toString(this.occurrences));
+        mdc.put(FIRST_SEEN_KEY, Long.toString(this.firstSeen));
+        mdc.put(LAST_SEEN_KEY, Long.toString(this.lastSeen));
+        return mdc;
+    }
+
+    @Override
+    @Deprecated
+    public Map<String, String> getMdc() {
+        return this.getMDCPropertyMap();
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return this.lastSeen;
+    }
+
+    @Override
+    public void prepareForDeferredProcessing() {
+        this.lastEvent.prepareForDeferredProcessing();
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import com.google.common.base.Charsets;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The last events logged by one thread as UTF-8 lines, attached to the crash reports of that thread. Lines are
+ * encoded directly into a ring of {@code maxBytes} preallocated when the thread logs its first event. New lines
+ * overwrite the oldest ones in place, so recording an event neither allocates nor locks. Only the owning thread
+ * records into and copies out of its buffer.
+ * <p>
+ * A line looks like {@code 2014-05-01T12:00:00.000Z INFO  [main] com.example.Service - message}. It takes at most
+ * a quarter of the buffer, so one huge message cannot push out the whole context.
+ *
+ * @author Mike Winkelmann
+ */
+final class CrashContextBuffer {
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private final byte[] data;
+    private final long[] lineStarts;
+    private final int maxLineBytes;
+    private final SimpleDateFormat dateFormat;
+    private long position;
+    private long lines;
+    private int index;
+    private long lineEnd;
+    private long day = Long.MIN_VALUE;
+    private byte[] datePrefix;
+
+    /**
+     * @param maxEvents number of lines kept
+     * @param maxBytes  size of the ring, the captured context is never larger
+     */
+    CrashContextBuffer(int maxEvents, int maxBytes) {
+        this.data = new byte[maxBytes];
+        this.lineStarts = new long[maxEvents];
+        this.maxLineBytes = Math.max(1, maxBytes / 4);
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'", Locale.ROOT);
+        this.dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    void record(ILoggingEvent event) {
+        this.lineStarts[(int) (this.lines++ % this.lineStarts.length)] = this.position;
+        // keeps one byte for the line break
+        this.lineEnd = this.position + this.maxLineBytes - 1;
+        this.writeTimestamp(event.getTimeStamp());
+        this.write(' ');
+        String level = event.getLevel().levelStr;
+        this.write(level);
+        for (int i = level.length(); i < 5; i++)
+            this.write(' ');
+        this.write(" [");
+        this.write(event.getThreadName());
+        this.write("] ");
+        this.write(event.getLoggerName());
+        this.write(" - ");
+        this.write(event.getFormattedMessage());
+        IThrowableProxy throwableProxy = event.getThrowableProxy();
+        if (throwableProxy != null) {
+            this.write(' ');
+            this.write(throwableProxy.getClassName());
+            if (throwableProxy.getMessage() != null) {
+                this.write(": ");
+                this.write(throwableProxy.getMessage());
+            }
+        }
+        this.put((byte) '\n');
+    }
+
+    /**
+     * @return the complete lines still in the ring, oldest first, empty if nothing was recorded
+     */
+    byte[] toByteArray() {
+        long overwritten = this.position - this.data.length;
+        long start = this.position;
+        long oldest = Math.max(0, this.lines - this.lineStarts.length);
+        for (long line = this.lines - 1; line >= oldest; line--) {
+            long lineStart = this.lineStarts[(int) (line % this.lineStarts.length)];
+            if (lineStart < overwritten)
+                break;
+            start = lineStart;
+        }
+        int length = (int) (this.position - start);
+        byte[] content = new byte[length];
+        int from = (int) (start % this.data.length);
+        int first = Math.min(length, this.data.length - from);
+        System.arraycopy(this.data, from, content, 0, first);
+        System.arraycopy(this.data, 0, content, first, length - first);
+        return content;
+    }
+
+    /**
+     * Writes {@code yyyy-MM-ddTHH:mm:ss.SSSZ} in UTC, the date part is formatted once per day.
+     */
+    private void writeTimestamp(long millis) {
+        long day = Math.floorDiv(millis, MILLIS_PER_DAY);
+        if (day != this.day) {
+            this.day = day;
+            this.datePrefix = this.dateFormat.format(new Date(day * MILLIS_PER_DAY)).getBytes(Charsets.US_ASCII);
+        }
+        for (byte b : this.datePrefix)
+            this.put(b);
+        int millisOfDay = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+        this.digits(millisOfDay / 3600000, 2);
+        this.put((byte) ':');
+        this.digits(millisOfDay / 60000 % 60, 2);
+        this.put((byte) ':');
+        this.digits(millisOfDay / 1000 % 60, 2);
+        this.put((byte) '.');
+        this.digits(millisOfDay % 1000, 3);
+        this.put((byte) 'Z');
+    }
+
+    private void digits(int value, int count) {
+        for (int divisor = count == 3 ? 100 : 10; divisor > 0; divisor /= 10)
+            this.put((byte) ('0' + value / divisor % 10));
+    }
+
+    private void write(char c) {
+        if (this.position < this.lineEnd)
+            this.put((byte) c);
+    }
+
+    /**
+     * Encodes the string as UTF-8 up to the end of the line, without cutting a character.
+     */
+    private void write(String s) {
+        if (s == null)
+            return;
+        for (int i = 0; i < s.length(); i++) {
+            int c = s.charAt(i);
+            int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            if (Character.isHighSurrogate((char) c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, s.charAt(i + 1));
+                bytes = 4;
+            } else if (Character.isSurrogate((char) c)) {
+                c = '?';
+                bytes = 1;
+            }
+            if (this.position + bytes > this.lineEnd)
+                return;
+            if (bytes == 4)
+                i++;
+            switch (bytes) {
+                case 1:
+                    this.put((byte) c);
+                    break;
+                case 2:
+                    this.put((byte) (0xC0 | c >> 6));
+                    this.put((byte) (0x80 | c & 0x3F));
+                    break;
+                case 3:
+                    this.put((byte) (0xE0 | c >> 12));
+                    this.put((byte) (0x80 | c >> 6 & 0x3F));
+                    this.put((byte) (0x80 | c & 0x3F));
+                    break;
+                default:
+                    this.put((byte) (0xF0 | c >> 18));
+                    this.put((byte) (0x80 | c >> 12 & 0x3F));
+                    this.put((byte) (0x80 | c >> 6 & 0x3F));
+                    this.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private void put(byte b) {
+        this.data[this.index] = b;
+        if (++this.index == this.data.length)
+            this.index = 0;
+        this.position++;
+    }
+
+}
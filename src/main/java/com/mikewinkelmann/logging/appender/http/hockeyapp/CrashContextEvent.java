@@ -0,0 +1,140 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import com.google.common.io.BaseEncoding;
+import org.slf4j.Marker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Queued crash event with the log context its thread recorded up to the crash. Delegates to the snapshot
+ * of the event and adds the context, which is sent as attachment.
+ * <p>
+ * The persistent queue only keeps the fields of a plain event, so the MDC carries the context as well, and
+ * {@link #restore(ILoggingEvent)} rebuilds the crash from the event read back.
+ *
+ * @author Mike Winkelmann
+ */
+class CrashContextEvent implements ILoggingEvent {
+
+    private static final String CONTEXT_KEY = "hockeyapp.context";
+
+    private final ILoggingEvent event;
+    private final byte[] context;
+
+    CrashContextEvent(ILoggingEvent event, byte[] context) {
+        this.event = event;
+        this.context = context;
+    }
+
+    /**
+     * @return the crash the event was encoded from, or the event itself if it has no context
+     */
+    static ILoggingEvent restore(ILoggingEvent event) {
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (event instanceof CrashContextEvent || mdc == null || !mdc.containsKey(CONTEXT_KEY))
+            return event;
+        try {
+            return new CrashContextEvent(event, BaseEncoding.base64().decode(mdc.get(CONTEXT_KEY)));
+        } catch (IllegalArgumentException e) {
+            return event;
+        }
+    }
+
+    /**
+     * @return the recorded lines as UTF-8, the array must not be modified
+     */
+    byte[] getContext() {
+        return this.context;
+    }
+
+    @Override
+    public String getThreadName() {
+        return this.event.getThreadName();
+    }
+
+    @Override
+    public Level getLevel() {
+        return this.event.getLevel();
+    }
+
+    @Override
+    public String getMessage() {
+        return this.event.getMessage();
+    }
+
+    @Override
+    public Object[] getArgumentArray() {
+        return this.event.getArgumentArray();
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        return this.event.getFormattedMessage();
+    }
+
+    @Override
+    public String getLoggerName() {
+        return this.event.getLoggerName();
+    }
+
+    @Override
+    public LoggerContextVO getLoggerContextVO() {
+        return this.event.getLoggerContextVO();
+    }
+
+    @Override
+    public IThrowableProxy getThrowableProxy() {
+        return this.event.getThrowableProxy();
+    }
+
+    @Override
+    public StackTraceElement[] getCallerData() {
+        return this.event.getCallerData();
+    }
+
+    @Override
+    public boolean hasCallerData() {
+        return this.event.hasCallerData();
+    }
+
+    @Override
+    public Marker getMarker() {
+        return this.event.getMarker();
+    }
+
+    /**
+     * @return the MDC of the event with the Base64 encoded context
+     */
+    @Override
+    public Map<String, String> getMDCPropertyMap() {
+        Map<String, String> eventMdc = this.event.getMDCPropertyMap();
+        if (this.context.length == 0)
+            return eventMdc;
+        Map<String, String> mdc = eventMdc != null ? new HashMap<String, String>(eventMdc)
+                : new HashMap<String, String>();
+        mdc.put(CONTEXT_KEY, BaseEncoding.base64().encode(this.context));
+        return mdc;
+    }
+
+    @Override
+    @Deprecated
+    public Map<String, String> getMdc() {
+        return this.getMDCPropertyMap();
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return this.event.getTimeStamp();
+    }
+
+    @Override
+    public void prepareForDeferredProcessing() {
+        this.event.prepareForDeferredProcessing();
+    }
+
+}
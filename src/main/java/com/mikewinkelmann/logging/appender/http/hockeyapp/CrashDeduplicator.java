@@ -0,0 +1,135 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.mikewinkelmann.logging.appender.http.event.LoggingEventSnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suppresses crashes with the same {@link CrashFingerprint} within a time window.
+ * <p>
+ * The first crash of a fingerprint is reported right away and opens the window. Duplicates within the window are
+ * only counted. When the window expires, or the crash is evicted because more than {@code maxCrashes} fingerprints
+ * are tracked, one {@link AggregatedCrashEvent} with the count and the first/last seen timestamps is handed to the
+ * {@link Listener}. The cache only detects expired windows while crashes are recorded, so the appender calls
+ * {@link #cleanUp()} periodically as well.
+ *
+ * @author Mike Winkelmann
+ */
+class CrashDeduplicator {
+
+    interface Listener {
+
+        void onAggregatedCrash(AggregatedCrashEvent event);
+
+    }
+
+    private final Cache<Long, Aggregate> aggregates;
+    private final int frames;
+    private final ThreadLocal<CrashContextBuffer> contextBuffers;
+
+    /**
+     * @param contextBuffers the context of the logging threads, null if crashes are reported without context
+     */
+    CrashDeduplicator(long windowMs, int maxCrashes, int frames, ThreadLocal<CrashContextBuffer> contextBuffers,
+                      final Listener listener) {
+        this.frames = frames;
+        this.contextBuffers = contextBuffers;
+        this.aggregates = CacheBuilder.newBuilder()
+                .expireAfterWrite(windowMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maxCrashes)
+                .removalListener(new RemovalListener<Long, Aggregate>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Long, Aggregate> notification) {
+                        AggregatedCrashEvent event = notification.getValue().close();
+                        if (event != null)
+                            listener.onAggregatedCrash(event);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Called on the logging thread before the crash is queued.
+     *
+     * @return true if the crash is a duplicate within the current window and must not be reported
+     */
+    boolean isDuplicate(ILoggingEvent event) {
+        Long fingerprint = CrashFingerprint.of(event.getThrowableProxy(), this.frames);
+        while (true) {
+            Aggregate aggregate = this.aggregates.asMap().putIfAbsent(fingerprint, new Aggregate());
+            if (aggregate == null)
+                return false;
+            if (aggregate.record(event, this.contextBuffers))
+                return true;
+            // the window closed concurrently, open a new one
+            this.aggregates.asMap().remove(fingerprint, aggregate);
+        }
+    }
+
+    /**
+     * Called on the logging thread if a crash which was not a duplicate could not be queued. Closes its window,
+     * so the next crash is reported again. Duplicates counted meanwhile are reported right away.
+     */
+    void dropped(ILoggingEvent event) {
+        this.aggregates.invalidate(CrashFingerprint.of(event.getThrowableProxy(), this.frames));
+    }
+
+    /**
+     * Closes the expired windows, reporting their suppressed duplicates.
+     */
+    void cleanUp() {
+        this.aggregates.cleanUp();
+    }
+
+    /**
+     * Closes all windows, reporting their suppressed duplicates.
+     */
+    void flush() {
+        this.aggregates.invalidateAll();
+        this.aggregates.cleanUp();
+    }
+
+    private static final class Aggregate {
+
+        private ILoggingEvent lastEvent;
+        private byte[] context;
+        private int suppressed;
+        private long firstSeen;
+        private long lastSeen;
+        private boolean closed;
+
+        synchronized boolean record(ILoggingEvent event, ThreadLocal<CrashContextBuffer> contextBuffers) {
+            if (this.closed)
+                return false;
+            if (this.suppressed == 0) {
+                this.firstSeen = event.getTimeStamp();
+                // copied once per window, from the thread of the first duplicate
+                if (contextBuffers != null)
+                    this.context = contextBuffers.get().toByteArray();
+            }
+            this.lastSeen = event.getTimeStamp();
+            // recorded on the logging thread, the logback event must not be retained
+            this.lastEvent = LoggingEventSnapshot.of(event);
+            this.suppressed++;
+            return true;
+        }
+
+        synchronized AggregatedCrashEvent close() {
+            if (this.closed)
+                return null;
+            this.closed = true;
+            if (this.suppressed == 0)
+                return null;
+            ILoggingEvent crash = this.context != null ? new CrashContextEvent(this.lastEvent, this.context)
+                    : this.lastEvent;
+            return new AggregatedCrashEvent(crash, this.suppressed, this.firstSeen, this.lastSeen);
+        }
+
+    }
+
+}
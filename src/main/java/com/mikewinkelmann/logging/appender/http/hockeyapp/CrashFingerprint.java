@@ -0,0 +1,34 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Identifies a crash by the class name of the throwable and its top stack frames,
+ * so the same failure at the same code location gets the same fingerprint regardless of its message.
+ *
+ * @author Mike Winkelmann
+ */
+final class CrashFingerprint {
+
+    private CrashFingerprint() {
+    }
+
+    static long of(IThrowableProxy throwableProxy, int maxFrames) {
+        Hasher hasher = Hashing.murmur3_128().newHasher()
+                .putString(Strings.nullToEmpty(throwableProxy.getClassName()), Charsets.UTF_8);
+        StackTraceElementProxy[] frames = throwableProxy.getStackTraceElementProxyArray();
+        for (int i = 0; i < frames.length && i < maxFrames; i++) {
+            StackTraceElement element = frames[i].getStackTraceElement();
+            hasher.putString(element.getClassName(), Charsets.UTF_8)
+                    .putString(element.getMethodName(), Charsets.UTF_8)
+                    .putInt(element.getLineNumber());
+        }
+        return hasher.hash().asLong();
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded cache of stack frames rendered as UTF-8 crash log lines. Exceptions repeat the same frames, so a
+ * report mostly copies cached lines instead of formatting and encoding every frame again. The least recently
+ * used lines are evicted once {@code maximumSize} is reached. A {@link StackTraceElement} only holds names,
+ * so the cache does not keep classes or class loaders alive.
+ *
+ * @author Mike Winkelmann
+ */
+class FrameCache {
+
+    private final Cache<StackTraceElement, byte[]> lines;
+
+    /**
+     * @param maximumSize maximum number of cached lines, 0 disables the cache
+     */
+    FrameCache(int maximumSize) {
+        this.lines = maximumSize > 0 ? CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .<StackTraceElement, byte[]>build() : null;
+    }
+
+    /**
+     * @return the line {@code \tat class.method(File:line)\n}, the array must not be modified
+     */
+    byte[] lineOf(StackTraceElement frame) {
+        if (this.lines == null)
+            return encode(frame);
+        byte[] line = this.lines.getIfPresent(frame);
+        if (line == null) {
+            line = encode(frame);
+            this.lines.put(frame, line);
+        }
+        return line;
+    }
+
+    private static byte[] encode(StackTraceElement frame) {
+        StringBuilder line = new StringBuilder(HockeyAppCrashAppenderConfig.FRAME_LINE_CAPACITY);
+        line.append('\t');
+        appendFrame(frame, line);
+        line.append('\n');
+        return line.toString().getBytes(Charsets.UTF_8);
+    }
+
+    /**
+     * Appends a frame in the format of {@link StackTraceElementProxy#getSTEAsString()} without building the string.
+     */
+    private static void appendFrame(StackTraceElement frame, StringBuilder content) {
+        content.append("at ").append(frame.getClassName()).append('.').append(frame.getMethodName());
+        if (frame.isNativeMethod()) {
+            content.append("(Native Method)");
+        } else if (frame.getFileName() == null) {
+            content.append("(Unknown Source)");
+        } else {
+            content.append('(').append(frame.getFileName());
+            if (frame.getLineNumber() >= 0)
+                content.append(':').append(frame.getLineNumber());
+            content.append(')');
+        }
+    }
+
+}
@@ -9,7 +9,7 @@ import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,43 +24,169 @@ public class HockeyAppCrashAppender extends AbstractHttpAppender {
     private static final Logger logger = LoggerFactory.getLogger(HockeyAppCrashAppender.class);
 
     private HockeyAppCrashAppenderService service;
+    private CrashDeduplicator deduplicator;
+    private volatile ThreadLocal<CrashContextBuffer> contextBuffers;
 
     // configuration
-    private String userId, contact, model, manufacturer, os, version, packageName, apiToken, appId, requestUrl;
+    private String userId, contact, model, manufacturer, os, version, packageName, apiToken, appId;
+    private long deduplicationWindowMs = HockeyAppCrashAppenderConfig.DEFAULT_DEDUPLICATION_WINDOW_MS;
+    private int deduplicationMaxCrashes = HockeyAppCrashAppenderConfig.DEFAULT_DEDUPLICATION_MAX_CRASHES;
+    private int deduplicationFrames = HockeyAppCrashAppenderConfig.DEFAULT_DEDUPLICATION_FRAMES;
+    private int frameCacheSize = HockeyAppCrashAppenderConfig.DEFAULT_FRAME_CACHE_SIZE;
+    private int attachmentEvents = HockeyAppCrashAppenderConfig.DEFAULT_ATTACHMENT_EVENTS;
+    private int attachmentMaxBytes = HockeyAppCrashAppenderConfig.DEFAULT_ATTACHMENT_MAX_BYTES;
 
 
     public HockeyAppCrashAppender() {
         this.setRequestUrl(HockeyAppCrashAppenderConfig.HOCKEYAPP_CRASH_API_URL);
     }
 
+    /**
+     * Validates the configuration before the workers, senders and registrations are started, so an invalid
+     * configuration leaves nothing running.
+     */
     @Override
     public void start() {
-        super.start();
+        if (this.isStarted())
+            return;
         Preconditions.checkNotNull(this.apiToken, "ApiToken must not be null");
         Preconditions.checkNotNull(this.appId, "AppId must not be null");
         Preconditions.checkNotNull(this.packageName, "PackageName must not be null");
-        requestUrl =
-                this.getRequestUrl().replace(HockeyAppCrashAppenderConfig.HOCKEYAPP_CRASH_API_URL_APPID_PLACEHOLDER, this.appId);
-        this.service = new HockeyAppCrashAppenderService(model, manufacturer, os, version, packageName);
+        Preconditions.checkArgument(this.frameCacheSize >= 0, "Frame cache size must be non negative");
+        Preconditions.checkArgument(this.attachmentEvents >= 0, "Attachment events must be non negative");
+        int minAttachmentBytes = HockeyAppCrashAppenderConfig.MINIMUM_ATTACHMENT_FILE_SIZE_BYTES;
+        int maxAttachmentBytes = HockeyAppCrashAppenderConfig.MAXIMUM_ATTACHMENT_FILE_SIZE_BYTES;
+        Preconditions.checkArgument(this.attachmentMaxBytes >= minAttachmentBytes
+                        && this.attachmentMaxBytes <= maxAttachmentBytes,
+                "Attachment max bytes must be between " + minAttachmentBytes + " and " + maxAttachmentBytes);
+        if (this.deduplicationWindowMs > 0) {
+            Preconditions.checkArgument(this.deduplicationMaxCrashes > 0, "Deduplication max crashes must be positive");
+            Preconditions.checkArgument(this.deduplicationFrames > 0, "Deduplication frames must be positive");
+        }
+        this.service = new HockeyAppCrashAppenderService(model, manufacturer, os, version, packageName,
+                this.frameCacheSize);
+        this.contextBuffers = null;
+        if (this.attachmentEvents > 0) {
+            final int maxEvents = this.attachmentEvents;
+            final int maxBytes = this.attachmentMaxBytes;
+            this.contextBuffers = new ThreadLocal<CrashContextBuffer>() {
+                @Override
+                protected CrashContextBuffer initialValue() {
+                    return new CrashContextBuffer(maxEvents, maxBytes);
+                }
+            };
+        }
+        this.deduplicator = null;
+        if (this.deduplicationWindowMs > 0) {
+            this.deduplicator = new CrashDeduplicator(this.deduplicationWindowMs, this.deduplicationMaxCrashes,
+                    this.deduplicationFrames, this.contextBuffers, new CrashDeduplicator.Listener() {
+                @Override
+                public void onAggregatedCrash(AggregatedCrashEvent event) {
+                    // the duplicates passed the sampling and rate limits already, the summary must not block
+                    // the logging thread or worker closing the window
+                    enqueueDirectly(event);
+                }
+            });
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (this.deduplicator != null)
+            this.deduplicator.flush();
+        super.stop();
+    }
+
+    /**
+     * Reports the suppressed duplicates of expired windows even if no further crash arrives.
+     */
+    @Override
+    protected void housekeeping() {
+        CrashDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator != null)
+            deduplicator.cleanUp();
+    }
+
+    /**
+     * Records every event reaching the appender into the context of its thread, also the events of levels
+     * which are not sent, so a crash report shows what led up to the crash.
+     */
+    @Override
+    protected void append(ILoggingEvent event) {
+        ThreadLocal<CrashContextBuffer> contextBuffers = this.contextBuffers;
+        if (contextBuffers != null && event != null && this.isStarted() && !(event instanceof AggregatedCrashEvent))
+            contextBuffers.get().record(event);
+        super.append(event);
+    }
+
+    /**
+     * Suppresses duplicate crashes before they take a queue slot. Only crashes which passed the sampling and rate
+     * limits open a window or are counted as duplicates.
+     */
+    @Override
+    protected boolean accept(ILoggingEvent event) {
+        CrashDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator != null && event.getThrowableProxy() != null && deduplicator.isDuplicate(event)) {
+            logger.debug("Suppressed duplicate crash Event: " + event.getLevel().levelStr);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * A crash which opened a window but could not be queued must not suppress the next crashes.
+     */
+    @Override
+    protected void onDropped(ILoggingEvent event) {
+        CrashDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator != null && event.getThrowableProxy() != null)
+            deduplicator.dropped(event);
+    }
+
+    /**
+     * Aggregated crashes are built from snapshots already and keep their occurrence counts. Crashes which passed
+     * the deduplication, sampling and rate limits get a copy of the context recorded by the logging thread, which
+     * calls this method. The snapshot carries the sample weight already.
+     */
+    @Override
+    protected ILoggingEvent snapshot(ILoggingEvent event) {
+        if (event instanceof AggregatedCrashEvent)
+            return event;
+        ThreadLocal<CrashContextBuffer> contextBuffers = this.contextBuffers;
+        ILoggingEvent snapshot = super.snapshot(event);
+        // only crashes are reported with their context
+        if (contextBuffers == null || event.getThrowableProxy() == null)
+            return snapshot;
+        return new CrashContextEvent(snapshot, contextBuffers.get().toByteArray());
     }
 
     @Override
     public HttpRequestBase createHttpRequest(ILoggingEvent event) throws HttpAppenderException {
 
+        // summaries and crashes with context read back from the persistent queue are plain events
+        event = AggregatedCrashEvent.restore(event);
+        AggregatedCrashEvent aggregatedCrash = event instanceof AggregatedCrashEvent ? (AggregatedCrashEvent) event : null;
         logger.debug("Create HttpRequest for HockeyApp call against crash api Event: " + event.getLevel().levelStr);
-        final HttpPost httpRequest = new HttpPost(requestUrl);
+        // resolved per request, the request url can be changed while the appender runs
+        final HttpPost httpRequest = new HttpPost(this.getRequestUrl()
+                .replace(HockeyAppCrashAppenderConfig.HOCKEYAPP_CRASH_API_URL_APPID_PLACEHOLDER, this.appId));
         httpRequest.addHeader("X-HockeyAppToken", this.apiToken);
 
         IThrowableProxy throwableProxy = event.getThrowableProxy();
         long timeStamp = event.getTimeStamp();
         String formattedMessage = event.getFormattedMessage();
 
-        FileBody crashFileBody = this.service.createCrashFileBody(throwableProxy, timeStamp);
-        FileBody descriptionFileBody = this.service.createDescriptionFileBody(formattedMessage, timeStamp);
+        ByteArrayBody crashFileBody = this.service.createCrashFileBody(throwableProxy, timeStamp);
+        ByteArrayBody descriptionFileBody =
+                this.service.createDescriptionFileBody(formattedMessage, timeStamp, aggregatedCrash);
         MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create()
                 .addPart("log", crashFileBody)
                 .addPart("description", descriptionFileBody);
-        //  TODO implement .addPart("attachment", this.createAttatchmentFile(event))
+        ILoggingEvent crashEvent = aggregatedCrash != null ? aggregatedCrash.getLastEvent() : event;
+        if (crashEvent instanceof CrashContextEvent && ((CrashContextEvent) crashEvent).getContext().length > 0)
+            multipartEntityBuilder.addPart("attachment",
+                    this.service.createAttachmentFileBody(((CrashContextEvent) crashEvent).getContext()));
         if (this.userId != null)
             multipartEntityBuilder.addTextBody("userID", this.userId);
         if (this.contact != null)
@@ -111,4 +237,28 @@ public class HockeyAppCrashAppender extends AbstractHttpAppender {
         this.appId = appId;
     }
 
+    public void setDeduplicationWindowMs(long deduplicationWindowMs) {
+        this.deduplicationWindowMs = deduplicationWindowMs;
+    }
+
+    public void setDeduplicationMaxCrashes(int deduplicationMaxCrashes) {
+        this.deduplicationMaxCrashes = deduplicationMaxCrashes;
+    }
+
+    public void setDeduplicationFrames(int deduplicationFrames) {
+        this.deduplicationFrames = deduplicationFrames;
+    }
+
+    public void setFrameCacheSize(int frameCacheSize) {
+        this.frameCacheSize = frameCacheSize;
+    }
+
+    public void setAttachmentEvents(int attachmentEvents) {
+        this.attachmentEvents = attachmentEvents;
+    }
+
+    public void setAttachmentMaxBytes(int attachmentMaxBytes) {
+        this.attachmentMaxBytes = attachmentMaxBytes;
+    }
+
 }
@@ -9,6 +9,15 @@ public class HockeyAppCrashAppenderConfig {
 
     public static final int MAXIMUM_CRASH_FILE_SIZE_BYTES = 204800; // 200KiloBytes
     public static final int MAXIMUM_DESCRIPTION_FILE_SIZE_BYTES = 204800; // 200KiloBytes
+    public static final int MAXIMUM_ATTACHMENT_FILE_SIZE_BYTES = 204800; // 200KiloBytes
+    public static final int MINIMUM_ATTACHMENT_FILE_SIZE_BYTES = 1024; // 1KiloByte
+    public static final long DEFAULT_DEDUPLICATION_WINDOW_MS = 0;
+    public static final int DEFAULT_DEDUPLICATION_MAX_CRASHES = 1000;
+    public static final int DEFAULT_DEDUPLICATION_FRAMES = 10;
+    public static final int DEFAULT_FRAME_CACHE_SIZE = 4096;
+    public static final int FRAME_LINE_CAPACITY = 128;
+    public static final int DEFAULT_ATTACHMENT_EVENTS = 0;
+    public static final int DEFAULT_ATTACHMENT_MAX_BYTES = 16384; // 16KiloBytes
     public static final String DATE_FORMAT = "EEE, d MMM yyyy HH:mm:ss Z";
     public static final String HOCKEYAPP_CRASH_API_URL_APPID_PLACEHOLDER = "{APPID}";
     public static final String HOCKEYAPP_CRASH_API_URL = "https://rink.hockeyapp.net/api/2/apps/"
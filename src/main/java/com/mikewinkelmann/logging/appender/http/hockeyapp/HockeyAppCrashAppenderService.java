@@ -4,17 +4,10 @@ import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
 import com.google.common.base.Strings;
 import com.mikewinkelmann.logging.appender.http.exception.HttpAppenderException;
-import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
 /**
  * Service to create all specific logs, formattings, ... for HockeyApp.
  *
@@ -24,11 +17,18 @@ public class HockeyAppCrashAppenderService {
 
     private static final Logger logger = LoggerFactory.getLogger(HockeyAppCrashAppenderService.class);
 
-    private SimpleDateFormat dateFormat = null;
+    private static final String CRASH_FILE_NAME = "crash.log";
+    private static final String DESCRIPTION_FILE_NAME = "description.log";
+    private static final String ATTACHMENT_FILE_NAME = "context.log";
+
+    private final TimestampFormatter timestampFormatter;
+    private final FrameCache frameCache;
     private String model, manufacturer, os, version, packageName;
 
-    HockeyAppCrashAppenderService(String model, String manufacturer, String os, String version, String packageName) {
-        this.dateFormat = new SimpleDateFormat(HockeyAppCrashAppenderConfig.DATE_FORMAT);
+    HockeyAppCrashAppenderService(String model, String manufacturer, String os, String version, String packageName,
+                                  int frameCacheSize) {
+        this.timestampFormatter = new TimestampFormatter(HockeyAppCrashAppenderConfig.DATE_FORMAT);
+        this.frameCache = new FrameCache(frameCacheSize);
         this.model = model;
         this.manufacturer = manufacturer;
         this.os = os;
@@ -36,136 +36,105 @@ public class HockeyAppCrashAppenderService {
         this.packageName = packageName;
     }
 
-    FileBody createCrashFileBody(IThrowableProxy throwableProxy, long timeStamp)
+    ByteArrayBody createCrashFileBody(IThrowableProxy throwableProxy, long timeStamp)
             throws HttpAppenderException {
         logger.debug("Create crash log file body");
-        File crashFile = this.createCrashLogFile(throwableProxy, timeStamp);
-        return new FileBody(crashFile);
+        byte[] content = this.createCrashLog(throwableProxy, timeStamp);
+        return new ByteArrayBody(content, CRASH_FILE_NAME);
     }
 
-    FileBody createDescriptionFileBody(String formattedMessage, long timeStamp)
+    ByteArrayBody createDescriptionFileBody(String formattedMessage, long timeStamp)
             throws HttpAppenderException {
-        logger.debug("Create description log file body");
-        File crashFile = this.createDescriptionLogFile(formattedMessage, timeStamp);
-        return new FileBody(crashFile);
+        return this.createDescriptionFileBody(formattedMessage, timeStamp, null);
     }
 
-    private File createCrashLogFile(IThrowableProxy throwableProxy, long timestamp)
+    /**
+     * @param aggregatedCrash if not null, the occurrence count and first/last seen dates are added
+     */
+    ByteArrayBody createDescriptionFileBody(String formattedMessage, long timeStamp, AggregatedCrashEvent aggregatedCrash)
             throws HttpAppenderException {
-        FileWriter fileWriter = null;
-        BufferedWriter bufferedWriter = null;
-        File tmpFile = null;
-        boolean errorOnClose = false;
-        try {
-            StringBuffer content = new StringBuffer(HockeyAppCrashAppenderConfig.MAXIMUM_CRASH_FILE_SIZE_BYTES);
-            content.append("Package: ").append(this.packageName).append("\n");
-            content.append("Version: ").append(Strings.nullToEmpty(this.version)).append("\n");
-            content.append("OS: ").append(Strings.nullToEmpty(this.os)).append("\n");
-            content.append("Manufacturer: ").append(Strings.nullToEmpty(this.manufacturer)).append("\n");
-            content.append("Model: ").append(Strings.nullToEmpty(this.model)).append("\n");
-            content.append("Date: ").append(dateFormat.format(new Date(timestamp))).append("\n");
-            content.append("\n");
-            if (throwableProxy != null)
-                content.append(this.parseStringArrayMessage(throwableProxy)).append("\n");
-            content.trimToSize();
+        logger.debug("Create description log file body");
+        byte[] content = this.createDescriptionLog(formattedMessage, timeStamp, aggregatedCrash);
+        return new ByteArrayBody(content, DESCRIPTION_FILE_NAME);
+    }
 
-            tmpFile = File.createTempFile("exception", ".tmp.log");
-            fileWriter = new FileWriter(tmpFile);
-            bufferedWriter = new BufferedWriter(fileWriter);
-            bufferedWriter.write(content.toString());
-        } catch (Exception e) {
-            throw new HttpAppenderException("Error due to create crash log file:", e);
-        } finally {
-            errorOnClose = closeBufferedWriter(bufferedWriter)
-                    && closeFileWriter(fileWriter);
-        }
-        if (errorOnClose) {
-            throw new HttpAppenderException("Error closing FileWriter or BufferedWriter");
-        }
-        logger.debug("Created crash log file content in tempFile: " + tmpFile.getAbsolutePath());
-        return tmpFile;
+    /**
+     * @param context the log lines recorded by the crashing thread as UTF-8
+     */
+    ByteArrayBody createAttachmentFileBody(byte[] context) {
+        logger.debug("Create attachment file body");
+        return new ByteArrayBody(context, ATTACHMENT_FILE_NAME);
     }
 
-    private File createDescriptionLogFile(String formattedMessage, long timestamp)
+    private byte[] createCrashLog(IThrowableProxy throwableProxy, long timestamp)
             throws HttpAppenderException {
-        FileWriter fileWriter = null;
-        BufferedWriter bufferedWriter = null;
-        File tmpFile = null;
-        boolean errorOnClose = false;
         try {
-            StringBuffer content = new StringBuffer(HockeyAppCrashAppenderConfig.MAXIMUM_DESCRIPTION_FILE_SIZE_BYTES);
-
-            content.append("Description: ").append(formattedMessage).append("\n");
-            content.append("Date: ").append(dateFormat.format(new Date(timestamp))).append("\n");
-            content.append("\n");
-            content.trimToSize();
-
-            tmpFile = File.createTempFile("description", ".tmp.log");
-            fileWriter = new FileWriter(tmpFile);
-            bufferedWriter = new BufferedWriter(fileWriter);
-            bufferedWriter.write(content.toString());
+            ReportBuffer report = ReportBuffer.start(HockeyAppCrashAppenderConfig.MAXIMUM_CRASH_FILE_SIZE_BYTES);
+            StringBuilder content = report.text();
+            content.append("Package: ").append(this.packageName).append('\n');
+            content.append("Version: ").append(Strings.nullToEmpty(this.version)).append('\n');
+            content.append("OS: ").append(Strings.nullToEmpty(this.os)).append('\n');
+            content.append("Manufacturer: ").append(Strings.nullToEmpty(this.manufacturer)).append('\n');
+            content.append("Model: ").append(Strings.nullToEmpty(this.model)).append('\n');
+            content.append("Date: ");
+            this.timestampFormatter.appendTo(content, timestamp);
+            content.append('\n');
+            content.append('\n');
+            if (throwableProxy != null) {
+                this.appendThrowable(throwableProxy, report);
+                content.append('\n');
+            }
+            return report.toByteArray();
         } catch (Exception e) {
-            throw new HttpAppenderException("Error due to create description log file:", e);
-        } finally {
-            errorOnClose = closeBufferedWriter(bufferedWriter)
-                    && closeFileWriter(fileWriter);
-        }
-        if (errorOnClose) {
-            throw new HttpAppenderException("Error closing FileWriter or BufferedWriter");
+            throw new HttpAppenderException("Error due to create crash log:", e);
         }
-        logger.debug("Created crash log file content in tempFile: " + tmpFile.getAbsolutePath());
-        return tmpFile;
     }
 
-    private boolean closeBufferedWriter(BufferedWriter bufferedWriter) {
-        if (bufferedWriter == null) {
-            return true;
-        }
-        boolean closed = true;
-        try {
-            bufferedWriter.flush();
-            bufferedWriter.close();
-        } catch (IOException e) {
-            closed = false;
-        }
-        return closed;
-    }
-
-    private boolean closeFileWriter(FileWriter fileWriter) {
-        if (fileWriter == null) {
-            return true;
-        }
-        boolean closed = true;
+    private byte[] createDescriptionLog(String formattedMessage, long timestamp, AggregatedCrashEvent aggregatedCrash)
+            throws HttpAppenderException {
         try {
-            fileWriter.close();
-        } catch (IOException e) {
-            closed = false;
+            ReportBuffer report = ReportBuffer.start(HockeyAppCrashAppenderConfig.MAXIMUM_DESCRIPTION_FILE_SIZE_BYTES);
+            StringBuilder content = report.text();
+            content.append("Description: ").append(formattedMessage).append('\n');
+            content.append("Date: ");
+            this.timestampFormatter.appendTo(content, timestamp);
+            content.append('\n');
+            if (aggregatedCrash != null) {
+                content.append("Occurrences: ").append(aggregatedCrash.getOccurrences()).append('\n');
+                content.append("First seen: ");
+                this.timestampFormatter.appendTo(content, aggregatedCrash.getFirstSeen());
+                content.append('\n');
+                content.append("Last seen: ");
+                this.timestampFormatter.appendTo(content, aggregatedCrash.getLastSeen());
+                content.append('\n');
+            }
+            content.append('\n');
+            return report.toByteArray();
+        } catch (Exception e) {
+            throw new HttpAppenderException("Error due to create description log:", e);
         }
-        return closed;
     }
 
-    private String parseStringArrayMessage(IThrowableProxy throwableProxy) {
-        String throwableClassName = throwableProxy.getClassName();
-        String throwableMessage = throwableProxy.getMessage();
+    /**
+     * Renders the first line into the text and copies the cached lines of the stack frames. Rendering stops
+     * once the report is full.
+     */
+    private void appendThrowable(IThrowableProxy throwableProxy, ReportBuffer report) {
         StackTraceElementProxy[] stackTraceElementProxyArray = throwableProxy.getStackTraceElementProxyArray();
-        logger.debug("Parse exception message with "
-                + stackTraceElementProxyArray.length + " elements to create the correct crash log file.");
-        StringBuffer buffer = new StringBuffer();
-        createFirstLine(throwableClassName, throwableMessage, buffer);
-
-        for (StackTraceElementProxy stackColumn : stackTraceElementProxyArray) {
-            buffer.append("\t").append(stackColumn.getSTEAsString()).append("\n");
-        }
-        return buffer.toString();
-    }
-
-    private void createFirstLine(String throwableClassName, String throwableMessage, StringBuffer buffer) {
-        if (throwableClassName != null)
-            buffer.append(throwableClassName);
-        if (throwableMessage != null)
-            buffer.append(" ").append(throwableMessage);
-        if (buffer.length() > 0)
-            buffer.append("\n");
+        if (logger.isDebugEnabled())
+            logger.debug("Parse exception message with {} elements to create the correct crash log file.",
+                    stackTraceElementProxyArray.length);
+        StringBuilder content = report.text();
+        int start = content.length();
+        if (throwableProxy.getClassName() != null)
+            content.append(throwableProxy.getClassName());
+        if (throwableProxy.getMessage() != null)
+            content.append(' ').append(throwableProxy.getMessage());
+        if (content.length() > start)
+            content.append('\n');
+
+        for (int i = 0; i < stackTraceElementProxyArray.length && !report.isFull(); i++)
+            report.append(this.frameCache.lineOf(stackTraceElementProxyArray[i].getStackTraceElement()));
     }
 
 }
@@ -0,0 +1,103 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import com.google.common.base.Charsets;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.util.Arrays;
+
+/**
+ * Per thread scratch space to build a report part as UTF-8. Text is collected in a reused {@link StringBuilder}
+ * and encoded into a reused byte buffer, already encoded lines are copied in as they are, so only the returned
+ * array is allocated. Content beyond the byte limit is cut at the last complete character.
+ *
+ * @author Mike Winkelmann
+ */
+final class ReportBuffer {
+
+    private static final ThreadLocal<ReportBuffer> BUFFERS = new ThreadLocal<ReportBuffer>() {
+        @Override
+        protected ReportBuffer initialValue() {
+            return new ReportBuffer();
+        }
+    };
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final CharsetEncoder encoder = Charsets.UTF_8.newEncoder();
+    private StringBuilder chars = new StringBuilder(INITIAL_CAPACITY);
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private boolean full;
+
+    private ReportBuffer() {
+    }
+
+    /**
+     * @return the empty buffer of the current thread, limited to {@code maxBytes}
+     */
+    static ReportBuffer start(int maxBytes) {
+        ReportBuffer buffer = BUFFERS.get();
+        if (buffer.chars.capacity() > HockeyAppCrashAppenderConfig.MAXIMUM_CRASH_FILE_SIZE_BYTES * 2)
+            buffer.chars = new StringBuilder(INITIAL_CAPACITY);
+        buffer.chars.setLength(0);
+        if (buffer.bytes.capacity() < maxBytes)
+            buffer.bytes = ByteBuffer.allocate(maxBytes);
+        buffer.bytes.clear();
+        buffer.bytes.limit(maxBytes);
+        buffer.full = false;
+        return buffer;
+    }
+
+    /**
+     * @return the builder for text following the content appended so far
+     */
+    StringBuilder text() {
+        return this.chars;
+    }
+
+    /**
+     * Appends an already encoded UTF-8 line after the text collected so far.
+     */
+    void append(byte[] utf8) {
+        this.encodeText();
+        if (this.full)
+            return;
+        int length = Math.min(utf8.length, this.bytes.remaining());
+        if (length < utf8.length) {
+            // step back to the first byte of the character which does not fit completely
+            while (length > 0 && (utf8[length] & 0xC0) == 0x80)
+                length--;
+            this.full = true;
+        }
+        this.bytes.put(utf8, 0, length);
+    }
+
+    /**
+     * @return true once the limit is reached and further content is cut
+     */
+    boolean isFull() {
+        return this.full || !this.bytes.hasRemaining();
+    }
+
+    /**
+     * @return the content of at most {@code maxBytes}
+     */
+    byte[] toByteArray() {
+        this.encodeText();
+        return Arrays.copyOf(this.bytes.array(), this.bytes.position());
+    }
+
+    private void encodeText() {
+        if (this.chars.length() == 0)
+            return;
+        if (!this.full) {
+            this.encoder.reset();
+            // an overflow stops the encoder before the first character which does not fit completely
+            this.full = this.encoder.encode(CharBuffer.wrap(this.chars), this.bytes, true).isOverflow();
+            this.encoder.flush(this.bytes);
+        }
+        this.chars.setLength(0);
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Thread-safe formatter for date patterns with a resolution of one second.
+ * The text of the last formatted second is memoised, so timestamps within the same second are appended
+ * without formatting or allocating anything. A miss formats with a thread confined {@link SimpleDateFormat}.
+ *
+ * @author Mike Winkelmann
+ */
+class TimestampFormatter {
+
+    private final ThreadLocal<SimpleDateFormat> dateFormats;
+    private volatile CachedSecond cachedSecond = new CachedSecond(Long.MIN_VALUE, null);
+
+    TimestampFormatter(final String pattern) {
+        this.dateFormats = new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return new SimpleDateFormat(pattern);
+            }
+        };
+    }
+
+    void appendTo(StringBuilder target, long timestamp) {
+        long second = timestamp / 1000;
+        CachedSecond cached = this.cachedSecond;
+        if (cached.second != second) {
+            cached = new CachedSecond(second, this.dateFormats.get().format(new Date(timestamp)));
+            this.cachedSecond = cached;
+        }
+        target.append(cached.text);
+    }
+
+    private static final class CachedSecond {
+
+        private final long second;
+        private final String text;
+
+        private CachedSecond(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import com.google.common.base.Strings;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes events with the configured field mapping. A field without a name is left out.
+ * Immutable, so one instance is shared by all workers.
+ *
+ * @author Mike Winkelmann
+ */
+class JsonEventSerializer {
+
+    private final JsonFormat format;
+    private final boolean isoTimestamp;
+    private final String bulkAction;
+    private final String timestampField, levelField, loggerField, threadField, messageField, mdcField, throwableField;
+
+    JsonEventSerializer(JsonFormat format, boolean isoTimestamp, String bulkAction, String timestampField,
+                        String levelField, String loggerField, String threadField, String messageField,
+                        String mdcField, String throwableField) {
+        this.format = format;
+        this.isoTimestamp = isoTimestamp;
+        this.bulkAction = Strings.emptyToNull(bulkAction);
+        this.timestampField = Strings.emptyToNull(timestampField);
+        this.levelField = Strings.emptyToNull(levelField);
+        this.loggerField = Strings.emptyToNull(loggerField);
+        this.threadField = Strings.emptyToNull(threadField);
+        this.messageField = Strings.emptyToNull(messageField);
+        this.mdcField = Strings.emptyToNull(mdcField);
+        this.throwableField = Strings.emptyToNull(throwableField);
+    }
+
+    JsonFormat getFormat() {
+        return this.format;
+    }
+
+    void write(List<ILoggingEvent> events, JsonWriter writer) throws IOException {
+        if (this.format == JsonFormat.ARRAY) {
+            writer.beginArray();
+            for (ILoggingEvent event : events)
+                this.writeEvent(event, writer);
+            writer.endArray();
+        } else {
+            for (ILoggingEvent event : events) {
+                if (this.bulkAction != null) {
+                    // the action line of the Elasticsearch bulk api, e.g. {"index":{}}
+                    writer.beginObject().name(this.bulkAction).beginObject().endObject().endObject();
+                    writer.newLine();
+                }
+                this.writeEvent(event, writer);
+                writer.newLine();
+            }
+        }
+    }
+
+    private void writeEvent(ILoggingEvent event, JsonWriter writer) throws IOException {
+        writer.beginObject();
+        if (this.timestampField != null) {
+            writer.name(this.timestampField);
+            if (this.isoTimestamp)
+                writer.isoTimestamp(event.getTimeStamp());
+            else
+                writer.value(event.getTimeStamp());
+        }
+        if (this.levelField != null)
+            writer.name(this.levelField).value(event.getLevel().levelStr);
+        if (this.loggerField != null)
+            writer.name(this.loggerField).value(event.getLoggerName());
+        if (this.threadField != null)
+            writer.name(this.threadField).value(event.getThreadName());
+        if (this.messageField != null)
+            writer.name(this.messageField).value(event.getFormattedMessage());
+        if (this.mdcField != null) {
+            Map<String, String> mdc = event.getMDCPropertyMap();
+            if (mdc != null && !mdc.isEmpty()) {
+                writer.name(this.mdcField).beginObject();
+                for (Map.Entry<String, String> entry : mdc.entrySet())
+                    writer.name(entry.getKey()).value(entry.getValue());
+                writer.endObject();
+            }
+        }
+        if (this.throwableField != null && event.getThrowableProxy() != null) {
+            writer.name(this.throwableField).beginString();
+            this.writeThrowable(event.getThrowableProxy(), null, writer);
+            writer.endString();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Writes the throwable like {@link Throwable#printStackTrace()} does, part by part into the escaped string.
+     */
+    private void writeThrowable(IThrowableProxy proxy, String prefix, JsonWriter writer) throws IOException {
+        if (prefix != null)
+            writer.stringPart(prefix);
+        writer.stringPart(proxy.getClassName());
+        if (proxy.getMessage() != null)
+            writer.stringPart(": ").stringPart(proxy.getMessage());
+        StackTraceElementProxy[] frames = proxy.getStackTraceElementProxyArray();
+        int commonFrames = proxy.getCommonFrames();
+        for (int i = 0; i < frames.length - commonFrames; i++) {
+            writer.stringPart("\n\tat ");
+            this.writeFrame(frames[i].getStackTraceElement(), writer);
+        }
+        if (commonFrames > 0)
+            writer.stringPart("\n\t... ").stringPart(commonFrames).stringPart(" common frames omitted");
+        IThrowableProxy[] suppressed = proxy.getSuppressed();
+        if (suppressed != null)
+            for (IThrowableProxy suppressedProxy : suppressed)
+                this.writeThrowable(suppressedProxy, "\nSuppressed: ", writer);
+        if (proxy.getCause() != null)
+            this.writeThrowable(proxy.getCause(), "\nCaused by: ", writer);
+    }
+
+    private void writeFrame(StackTraceElement frame, JsonWriter writer) throws IOException {
+        writer.stringPart(frame.getClassName()).stringPart('.').stringPart(frame.getMethodName());
+        if (frame.isNativeMethod()) {
+            writer.stringPart("(Native Method)");
+        } else if (frame.getFileName() == null) {
+            writer.stringPart("(Unknown Source)");
+        } else {
+            writer.stringPart('(').stringPart(frame.getFileName());
+            if (frame.getLineNumber() >= 0)
+                writer.stringPart(':').stringPart(frame.getLineNumber());
+            writer.stringPart(')');
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.apache.http.Consts;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Entity serializing the events while they are written to the connection, so the body never exists as a whole
+ * in memory. The entity is repeatable because the events are immutable snapshots, which allows retries.
+ *
+ * @author Mike Winkelmann
+ */
+class JsonEventsEntity extends AbstractHttpEntity {
+
+    private final List<ILoggingEvent> events;
+    private final JsonEventSerializer serializer;
+
+    JsonEventsEntity(List<ILoggingEvent> events, JsonEventSerializer serializer) {
+        this.events = events;
+        this.serializer = serializer;
+        this.setContentType(ContentType.create(serializer.getFormat().getContentType(), Consts.UTF_8).toString());
+        // the length is unknown until written, so the body is sent chunked
+        this.setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Only used by consumers which read instead of write the entity, e.g. {@code EntityUtils}. Both engines and the
+     * request compressor call {@link #writeTo}, the async engine buffers the body that way before it is sent.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(JsonHttpPostAppenderConfig.WRITE_BUFFER_SIZE);
+        this.writeTo(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outstream, Consts.UTF_8),
+                JsonHttpPostAppenderConfig.WRITE_BUFFER_SIZE);
+        this.serializer.write(this.events, new JsonWriter(writer));
+        // flush only, closing the writer would close the connection stream
+        writer.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+/**
+ * Enum for all supported body formats of the {@link JsonHttpPostAppender}.
+ *
+ * @author Mike Winkelmann
+ */
+public enum JsonFormat {
+
+    /**
+     * One JSON object per line, as expected by bulk endpoints like the one of Elasticsearch.
+     */
+    NDJSON("application/x-ndjson"),
+
+    /**
+     * One JSON array containing all events of the request.
+     */
+    ARRAY("application/json");
+
+    private final String contentType;
+
+    JsonFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+}
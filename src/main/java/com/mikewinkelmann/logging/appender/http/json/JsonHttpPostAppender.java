@@ -0,0 +1,130 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.mikewinkelmann.logging.appender.http.AbstractHttpAppender;
+import com.mikewinkelmann.logging.appender.http.exception.HttpAppenderException;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Posts the events as NDJSON or as JSON array to the configured request url, e.g. to a log collector or the
+ * bulk api of Elasticsearch. The events are serialized while the request body is written, so there is no
+ * intermediate document or string per event.
+ *
+ * @author Mike Winkelmann
+ */
+public class JsonHttpPostAppender extends AbstractHttpAppender {
+
+    private JsonEventSerializer serializer;
+
+    // configuration
+    private JsonFormat format = JsonHttpPostAppenderConfig.DEFAULT_FORMAT;
+    private boolean isoTimestamp = JsonHttpPostAppenderConfig.DEFAULT_ISO_TIMESTAMP;
+    private String bulkAction;
+    private String timestampField = JsonHttpPostAppenderConfig.DEFAULT_TIMESTAMP_FIELD;
+    private String levelField = JsonHttpPostAppenderConfig.DEFAULT_LEVEL_FIELD;
+    private String loggerField = JsonHttpPostAppenderConfig.DEFAULT_LOGGER_FIELD;
+    private String threadField = JsonHttpPostAppenderConfig.DEFAULT_THREAD_FIELD;
+    private String messageField = JsonHttpPostAppenderConfig.DEFAULT_MESSAGE_FIELD;
+    private String mdcField = JsonHttpPostAppenderConfig.DEFAULT_MDC_FIELD;
+    private String throwableField = JsonHttpPostAppenderConfig.DEFAULT_THROWABLE_FIELD;
+
+    @Override
+    public void start() {
+        if (this.isStarted())
+            return;
+        // the serializer must exist before the workers take the first event
+        this.serializer = new JsonEventSerializer(this.format, this.isoTimestamp, this.bulkAction,
+                this.timestampField, this.levelField, this.loggerField, this.threadField, this.messageField,
+                this.mdcField, this.throwableField);
+        super.start();
+    }
+
+    @Override
+    public HttpRequestBase createHttpRequest(ILoggingEvent event) throws HttpAppenderException {
+        return this.createHttpRequest(Collections.singletonList(event));
+    }
+
+    @Override
+    public HttpRequestBase createHttpRequest(List<ILoggingEvent> events) throws HttpAppenderException {
+        final HttpPost httpRequest = new HttpPost(this.getRequestUrl());
+        httpRequest.setEntity(new JsonEventsEntity(events, this.serializer));
+        return httpRequest;
+    }
+
+    public void setFormat(String format) {
+        this.format = JsonFormat.valueOf(format.toUpperCase());
+    }
+
+    public void setIsoTimestamp(boolean isoTimestamp) {
+        this.isoTimestamp = isoTimestamp;
+    }
+
+    public void setBulkAction(String bulkAction) {
+        this.bulkAction = bulkAction;
+    }
+
+    public void setTimestampField(String timestampField) {
+        this.timestampField = timestampField;
+    }
+
+    public void setLevelField(String levelField) {
+        this.levelField = levelField;
+    }
+
+    public void setLoggerField(String loggerField) {
+        this.loggerField = loggerField;
+    }
+
+    public void setThreadField(String threadField) {
+        this.threadField = threadField;
+    }
+
+    public void setMessageField(String messageField) {
+        this.messageField = messageField;
+    }
+
+    public void setMdcField(String mdcField) {
+        this.mdcField = mdcField;
+    }
+
+    public void setThrowableField(String throwableField) {
+        this.throwableField = throwableField;
+    }
+
+    /**
+     * Leaves the field out of every event. Available fields are: TIMESTAMP, LEVEL, LOGGER, THREAD, MESSAGE, MDC,
+     * THROWABLE.
+     */
+    public void addExcludeField(String field) {
+        switch (field.trim().toUpperCase()) {
+            case "TIMESTAMP":
+                this.timestampField = null;
+                break;
+            case "LEVEL":
+                this.levelField = null;
+                break;
+            case "LOGGER":
+                this.loggerField = null;
+                break;
+            case "THREAD":
+                this.threadField = null;
+                break;
+            case "MESSAGE":
+                this.messageField = null;
+                break;
+            case "MDC":
+                this.mdcField = null;
+                break;
+            case "THROWABLE":
+                this.throwableField = null;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown field " + field);
+        }
+    }
+
+}
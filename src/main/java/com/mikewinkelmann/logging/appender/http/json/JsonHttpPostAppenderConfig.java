@@ -0,0 +1,21 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+/**
+ * Configuration class for JsonHttpPostAppender.
+ *
+ * @author Mike Winkelmann
+ */
+public class JsonHttpPostAppenderConfig {
+
+    public static final JsonFormat DEFAULT_FORMAT = JsonFormat.NDJSON;
+    public static final boolean DEFAULT_ISO_TIMESTAMP = true;
+    public static final String DEFAULT_TIMESTAMP_FIELD = "@timestamp";
+    public static final String DEFAULT_LEVEL_FIELD = "level";
+    public static final String DEFAULT_LOGGER_FIELD = "logger";
+    public static final String DEFAULT_THREAD_FIELD = "thread";
+    public static final String DEFAULT_MESSAGE_FIELD = "message";
+    public static final String DEFAULT_MDC_FIELD = "mdc";
+    public static final String DEFAULT_THROWABLE_FIELD = "throwable";
+    public static final int WRITE_BUFFER_SIZE = 8192;
+
+}
@@ -0,0 +1,218 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming JSON writer. Strings are escaped character by character straight into the underlying writer,
+ * so no intermediate strings are created. {@code </} is written as {@code <\/}, so a body embedded in an html
+ * script element cannot close it. The caller is responsible for a well formed structure.
+ *
+ * @author Mike Winkelmann
+ */
+class JsonWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int MAX_DEPTH = 8;
+
+    private final Writer out;
+    private final boolean[] hasElements = new boolean[MAX_DEPTH];
+    private int depth = -1;
+    // last character of the current string, to escape the slash of "</"
+    private char previous;
+
+    JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        return this.begin('{');
+    }
+
+    JsonWriter endObject() throws IOException {
+        return this.end('}');
+    }
+
+    JsonWriter beginArray() throws IOException {
+        return this.begin('[');
+    }
+
+    JsonWriter endArray() throws IOException {
+        return this.end(']');
+    }
+
+    JsonWriter name(String name) throws IOException {
+        this.separate();
+        this.string(name);
+        this.out.write(':');
+        // the value following the name must not be separated again
+        this.hasElements[this.depth] = false;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        this.separate();
+        if (value == null)
+            this.out.write("null");
+        else
+            this.string(value);
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        this.separate();
+        this.out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Starts a string value whose content is appended in pieces with {@link #stringPart(CharSequence)}.
+     */
+    JsonWriter beginString() throws IOException {
+        this.separate();
+        this.out.write('"');
+        this.previous = 0;
+        return this;
+    }
+
+    JsonWriter stringPart(CharSequence part) throws IOException {
+        this.escape(part);
+        return this;
+    }
+
+    JsonWriter stringPart(char part) throws IOException {
+        this.escape(part);
+        return this;
+    }
+
+    JsonWriter stringPart(int part) throws IOException {
+        this.out.write(Integer.toString(part));
+        this.previous = 0;
+        return this;
+    }
+
+    JsonWriter endString() throws IOException {
+        this.out.write('"');
+        return this;
+    }
+
+    /**
+     * Writes the UTC time as ISO 8601 with milliseconds, e.g. {@code 2014-03-01T12:30:05.123Z}.
+     */
+    JsonWriter isoTimestamp(long millis) throws IOException {
+        this.separate();
+        long epochDay = Math.floorDiv(millis, 86400000L);
+        int millisOfDay = (int) Math.floorMod(millis, 86400000L);
+        // civil date from days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        this.out.write('"');
+        this.digits(year, 4);
+        this.out.write('-');
+        this.digits(month, 2);
+        this.out.write('-');
+        this.digits(day, 2);
+        this.out.write('T');
+        this.digits(millisOfDay / 3600000, 2);
+        this.out.write(':');
+        this.digits(millisOfDay / 60000 % 60, 2);
+        this.out.write(':');
+        this.digits(millisOfDay / 1000 % 60, 2);
+        this.out.write('.');
+        this.digits(millisOfDay % 1000, 3);
+        this.out.write("Z\"");
+        return this;
+    }
+
+    void newLine() throws IOException {
+        this.out.write('\n');
+    }
+
+    private JsonWriter begin(char bracket) throws IOException {
+        this.separate();
+        this.out.write(bracket);
+        this.hasElements[++this.depth] = false;
+        return this;
+    }
+
+    private JsonWriter end(char bracket) throws IOException {
+        this.out.write(bracket);
+        this.depth--;
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (this.depth < 0)
+            return;
+        if (this.hasElements[this.depth])
+            this.out.write(',');
+        this.hasElements[this.depth] = true;
+    }
+
+    private void string(String value) throws IOException {
+        this.out.write('"');
+        this.previous = 0;
+        this.escape(value);
+        this.out.write('"');
+    }
+
+    private void escape(CharSequence value) throws IOException {
+        for (int i = 0; i < value.length(); i++)
+            this.escape(value.charAt(i));
+    }
+
+    private void escape(char c) throws IOException {
+        switch (c) {
+            case '"':
+                this.out.write("\\\"");
+                break;
+            case '\\':
+                this.out.write("\\\\");
+                break;
+            case '\n':
+                this.out.write("\\n");
+                break;
+            case '\r':
+                this.out.write("\\r");
+                break;
+            case '\t':
+                this.out.write("\\t");
+                break;
+            case '/':
+                this.out.write(this.previous == '<' ? "\\/" : "/");
+                break;
+            default:
+                if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                    this.out.write("\\u");
+                    this.out.write(HEX[c >> 12 & 0xF]);
+                    this.out.write(HEX[c >> 8 & 0xF]);
+                    this.out.write(HEX[c >> 4 & 0xF]);
+                    this.out.write(HEX[c & 0xF]);
+                } else {
+                    this.out.write(c);
+                }
+        }
+        this.previous = c;
+    }
+
+    private void digits(long value, int width) throws IOException {
+        for (long divisor = pow10(width - 1); divisor > 0; divisor /= 10)
+            this.out.write((char) ('0' + value / divisor % 10));
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++)
+            result *= 10;
+        return result;
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.mikewinkelmann.logging.appender.http.metrics;
+
+import ch.qos.logback.classic.Level;
+import com.mikewinkelmann.logging.appender.LoggingLevel;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one http appender. The counters touched by logging threads are striped {@link LongAdder}s,
+ * so recording does not add contention to {@code append()}. Queue depth is computed when it is read.
+ *
+ * @author Mike Winkelmann
+ */
+public class AppenderMetrics implements AppenderMetricsMXBean {
+
+    private static final LoggingLevel[] LEVELS = LoggingLevel.values();
+    private static final int MAX_STATUS_CODE = 599;
+
+    private final RateMeter enqueued = new RateMeter();
+    private final RateMeter dequeued = new RateMeter();
+    private final LongAdder[] dropped = new LongAdder[LEVELS.length];
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final AtomicLongArray statusCodes = new AtomicLongArray(MAX_STATUS_CODE + 1);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+    private volatile Collection<? extends Queue<?>> queues = Collections.emptyList();
+
+    public AppenderMetrics() {
+        for (int i = 0; i < this.dropped.length; i++)
+            this.dropped[i] = new LongAdder();
+    }
+
+    public void setQueues(Collection<? extends Queue<?>> queues) {
+        this.queues = queues;
+    }
+
+    public void enqueued() {
+        this.enqueued.mark();
+    }
+
+    public void dequeued() {
+        this.dequeued.mark();
+    }
+
+    public void dropped(Level level) {
+        this.dropped[LoggingLevel.of(level).ordinal()].increment();
+    }
+
+    /**
+     * The event was left out by the adaptive sampler, it is accounted for by the weight of the kept events.
+     */
+    public void sampledOut() {
+        this.sampledOut.increment();
+    }
+
+    /**
+     * @param contentLength length of the request body, negative if unknown
+     */
+    public void requestSent(long contentLength) {
+        this.requests.increment();
+        if (contentLength > 0)
+            this.bytesSent.add(contentLength);
+    }
+
+    public void responseReceived(int statusCode) {
+        if (statusCode >= 0 && statusCode <= MAX_STATUS_CODE)
+            this.statusCodes.incrementAndGet(statusCode);
+    }
+
+    public void latency(long nanos) {
+        this.latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void retried() {
+        this.retries.increment();
+    }
+
+    /**
+     * A request failed and is not retried anymore, its events are lost.
+     */
+    public void requestFailed() {
+        this.failedRequests.increment();
+    }
+
+    public void workerStarted() {
+        this.liveWorkers.incrementAndGet();
+    }
+
+    public void workerStopped() {
+        this.liveWorkers.decrementAndGet();
+    }
+
+    public long getDroppedEvents(LoggingLevel level) {
+        return this.dropped[level.ordinal()].sum();
+    }
+
+    @Override
+    public long getEnqueuedEvents() {
+        return this.enqueued.getCount();
+    }
+
+    @Override
+    public double getEnqueueRate() {
+        return this.enqueued.getOneMinuteRate();
+    }
+
+    @Override
+    public long getDequeuedEvents() {
+        return this.dequeued.getCount();
+    }
+
+    @Override
+    public double getDequeueRate() {
+        return this.dequeued.getOneMinuteRate();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Queue<?> queue : this.queues)
+            depth += queue.size();
+        return depth;
+    }
+
+    @Override
+    public long getDroppedEventsTotal() {
+        long total = 0;
+        for (LongAdder counter : this.dropped)
+            total += counter.sum();
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getDroppedEvents() {
+        Map<String, Long> droppedEvents = new LinkedHashMap<String, Long>();
+        for (LoggingLevel level : LEVELS)
+            droppedEvents.put(level.name(), this.dropped[level.ordinal()].sum());
+        return droppedEvents;
+    }
+
+    @Override
+    public long getSampledOutEvents() {
+        return this.sampledOut.sum();
+    }
+
+    @Override
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    @Override
+    public long getFailedRequests() {
+        return this.failedRequests.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return this.retries.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return this.bytesSent.sum();
+    }
+
+    @Override
+    public Map<Integer, Long> getStatusCodes() {
+        Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (int statusCode = 0; statusCode <= MAX_STATUS_CODE; statusCode++) {
+            long count = this.statusCodes.get(statusCode);
+            if (count > 0)
+                counts.put(statusCode, count);
+        }
+        return counts;
+    }
+
+    @Override
+    public long getLatencyP50() {
+        return this.latency.percentile(50);
+    }
+
+    @Override
+    public long getLatencyP90() {
+        return this.latency.percentile(90);
+    }
+
+    @Override
+    public long getLatencyP99() {
+        return this.latency.percentile(99);
+    }
+
+    @Override
+    public long getLatencyP999() {
+        return this.latency.percentile(99.9);
+    }
+
+    @Override
+    public long getLatencyMax() {
+        return this.latency.max();
+    }
+
+    @Override
+    public int getLiveWorkers() {
+        return this.liveWorkers.get();
+    }
+
+}
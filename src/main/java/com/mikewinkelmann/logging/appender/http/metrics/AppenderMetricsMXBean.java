@@ -0,0 +1,51 @@
+package com.mikewinkelmann.logging.appender.http.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link AppenderMetrics}. Rates are events per second averaged over about one minute,
+ * latencies are in microseconds.
+ *
+ * @author Mike Winkelmann
+ */
+public interface AppenderMetricsMXBean {
+
+    long getEnqueuedEvents();
+
+    double getEnqueueRate();
+
+    long getDequeuedEvents();
+
+    double getDequeueRate();
+
+    int getQueueDepth();
+
+    long getDroppedEventsTotal();
+
+    Map<String, Long> getDroppedEvents();
+
+    long getSampledOutEvents();
+
+    long getRequests();
+
+    long getFailedRequests();
+
+    long getRetries();
+
+    long getBytesSent();
+
+    Map<Integer, Long> getStatusCodes();
+
+    long getLatencyP50();
+
+    long getLatencyP90();
+
+    long getLatencyP99();
+
+    long getLatencyP999();
+
+    long getLatencyMax();
+
+    int getLiveWorkers();
+
+}
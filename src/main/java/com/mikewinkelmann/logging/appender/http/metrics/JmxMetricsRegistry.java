@@ -0,0 +1,54 @@
+package com.mikewinkelmann.logging.appender.http.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers one MXBean per appender at the platform MBean server, named
+ * {@code com.mikewinkelmann.logging:type=HttpAppender,context=<context>,name=<appender>}.
+ *
+ * @author Mike Winkelmann
+ */
+public class JmxMetricsRegistry implements MetricsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(JmxMetricsRegistry.class);
+
+    private static final String DOMAIN = "com.mikewinkelmann.logging";
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    @Override
+    public void register(String contextName, String appenderName, AppenderMetrics metrics) {
+        try {
+            ObjectName objectName = objectName(contextName, appenderName);
+            if (this.mBeanServer.isRegistered(objectName))
+                this.mBeanServer.unregisterMBean(objectName);
+            this.mBeanServer.registerMBean(metrics, objectName);
+        } catch (JMException e) {
+            logger.warn("Could not register metrics of appender " + appenderName, e);
+        }
+    }
+
+    @Override
+    public void unregister(String contextName, String appenderName) {
+        try {
+            this.mBeanServer.unregisterMBean(objectName(contextName, appenderName));
+        } catch (InstanceNotFoundException e) {
+            // already unregistered
+        } catch (JMException e) {
+            logger.warn("Could not unregister metrics of appender " + appenderName, e);
+        }
+    }
+
+    private static ObjectName objectName(String contextName, String appenderName) throws JMException {
+        return new ObjectName(DOMAIN + ":type=HttpAppender,context=" + ObjectName.quote(String.valueOf(contextName))
+                + ",name=" + ObjectName.quote(String.valueOf(appenderName)));
+    }
+
+}
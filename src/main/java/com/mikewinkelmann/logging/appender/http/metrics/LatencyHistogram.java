@@ -0,0 +1,77 @@
+package com.mikewinkelmann.logging.appender.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of latencies in microseconds, similar to HdrHistogram with one significant digit.
+ * Every power of two is split into 16 buckets, so a percentile is off by at most 1/16 of its value.
+ * Recording is a single atomic increment without allocation.
+ *
+ * @author Mike Winkelmann
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // about 12 days in microseconds
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+    void record(long micros) {
+        this.counts.incrementAndGet(indexOf(Math.max(0, Math.min(micros, MAX_VALUE))));
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency in microseconds below which the given percentage of all recorded latencies lies,
+     * 0 if nothing was recorded
+     */
+    long percentile(double percentile) {
+        long total = this.count();
+        if (total == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long cumulative = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            cumulative += this.counts.get(i);
+            if (cumulative >= target)
+                return valueOf(i);
+        }
+        return valueOf(this.counts.length() - 1);
+    }
+
+    long max() {
+        for (int i = this.counts.length() - 1; i >= 0; i--) {
+            if (this.counts.get(i) > 0)
+                return valueOf(i);
+        }
+        return 0;
+    }
+
+    long count() {
+        long total = 0;
+        for (int i = 0; i < this.counts.length(); i++)
+            total += this.counts.get(i);
+        return total;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the middle of the value range of the bucket
+     */
+    private static long valueOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >> 1);
+    }
+
+}
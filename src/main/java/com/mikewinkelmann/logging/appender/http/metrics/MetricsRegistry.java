@@ -0,0 +1,23 @@
+package com.mikewinkelmann.logging.appender.http.metrics;
+
+/**
+ * Publishes the metrics of http appenders to a monitoring system. Implementations are found with
+ * {@link java.util.ServiceLoader}: add the class name to {@code META-INF/services/}
+ * {@code com.mikewinkelmann.logging.appender.http.metrics.MetricsRegistry}. The metrics are read on demand,
+ * so an implementation should register gauges reading from {@link AppenderMetrics} instead of copying values.
+ *
+ * @author Mike Winkelmann
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Called when an appender starts.
+     */
+    void register(String contextName, String appenderName, AppenderMetrics metrics);
+
+    /**
+     * Called when an appender stops.
+     */
+    void unregister(String contextName, String appenderName);
+
+}
@@ -0,0 +1,49 @@
+package com.mikewinkelmann.logging.appender.http.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and reports their exponentially weighted one minute rate.
+ * Marking only increments a striped counter. The rate is updated when it is read, weighted by the time
+ * elapsed since the previous read, so irregular reads by a monitoring tool still give a correct average.
+ *
+ * @author Mike Winkelmann
+ */
+class RateMeter {
+
+    private static final double WINDOW_SECONDS = 60;
+
+    private final LongAdder count = new LongAdder();
+    private long lastCount;
+    private long lastTick = System.nanoTime();
+    private double rate = Double.NaN;
+
+    void mark() {
+        this.count.increment();
+    }
+
+    long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return events per second
+     */
+    synchronized double getOneMinuteRate() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (double) (now - this.lastTick) / TimeUnit.SECONDS.toNanos(1);
+        if (elapsedSeconds < 1 && !Double.isNaN(this.rate))
+            return this.rate;
+        long count = this.count.sum();
+        double instantRate = elapsedSeconds > 0 ? (count - this.lastCount) / elapsedSeconds : 0;
+        if (Double.isNaN(this.rate))
+            this.rate = instantRate;
+        else
+            this.rate += (1 - Math.exp(-elapsedSeconds / WINDOW_SECONDS)) * (instantRate - this.rate);
+        this.lastCount = count;
+        this.lastTick = now;
+        return this.rate;
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.mikewinkelmann.logging.appender.http.queue;
+
+/**
+ * Enum for all supported policies when a {@link PersistentEventQueue} forces its files to disk.
+ *
+ * @author Mike Winkelmann
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Writing back is left to the operating system. Survives a crash of the process, but not of the machine.
+     */
+    NEVER,
+
+    /**
+     * Forces at most once per {@code fsyncIntervalMs} and whenever a segment is full.
+     */
+    INTERVAL,
+
+    /**
+     * Forces after every write, slowest but no acknowledged state is lost.
+     */
+    ALWAYS
+
+}
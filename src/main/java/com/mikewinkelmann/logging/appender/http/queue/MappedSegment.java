@@ -0,0 +1,123 @@
+package com.mikewinkelmann.logging.appender.http.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only, memory-mapped file of length prefixed records. A length of 0 marks the end of the records,
+ * the length is written after the record itself, so a torn write is never read back.
+ *
+ * @author Mike Winkelmann
+ */
+final class MappedSegment {
+
+    private static final int LENGTH_SIZE = 4;
+
+    private final long id;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+
+    private MappedSegment(long id, File file, MappedByteBuffer buffer) {
+        this.id = id;
+        this.file = file;
+        this.buffer = buffer;
+        this.writePosition = this.scan();
+    }
+
+    static MappedSegment open(long id, File file, int size) throws IOException {
+        return new MappedSegment(id, file, map(file, size));
+    }
+
+    /**
+     * Maps the whole file, a new file is created with {@code size} bytes.
+     */
+    static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            long length = randomAccessFile.length() > 0 ? randomAccessFile.length() : size;
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @return bytes the record takes in a segment
+     */
+    static int recordSize(byte[] record) {
+        return LENGTH_SIZE + record.length;
+    }
+
+    long getId() {
+        return this.id;
+    }
+
+    int getWritePosition() {
+        return this.writePosition;
+    }
+
+    /**
+     * @return false if the record does not fit into this segment anymore
+     */
+    boolean append(byte[] record) {
+        int end = this.writePosition + recordSize(record);
+        if (end > this.buffer.capacity())
+            return false;
+        ByteBuffer target = this.buffer.duplicate();
+        target.position(this.writePosition + LENGTH_SIZE);
+        target.put(record);
+        this.buffer.putInt(this.writePosition, record.length);
+        this.writePosition = end;
+        return true;
+    }
+
+    byte[] read(int position) {
+        byte[] record = new byte[this.buffer.getInt(position)];
+        ByteBuffer source = this.buffer.duplicate();
+        source.position(position + LENGTH_SIZE);
+        source.get(record);
+        return record;
+    }
+
+    int next(int position) {
+        return position + LENGTH_SIZE + this.buffer.getInt(position);
+    }
+
+    /**
+     * @return number of records between the position and the end of this segment
+     */
+    int count(int position) {
+        int count = 0;
+        for (int current = position; current < this.writePosition; current = this.next(current))
+            count++;
+        return count;
+    }
+
+    /**
+     * @return position after the last complete record
+     */
+    private int scan() {
+        int current = 0;
+        while (current + LENGTH_SIZE <= this.buffer.capacity()) {
+            int length = this.buffer.getInt(current);
+            if (length <= 0 || current + LENGTH_SIZE + length > this.buffer.capacity())
+                break;
+            current += LENGTH_SIZE + length;
+        }
+        return current;
+    }
+
+    void force() {
+        this.buffer.force();
+    }
+
+    boolean delete() {
+        return this.file.delete();
+    }
+
+}
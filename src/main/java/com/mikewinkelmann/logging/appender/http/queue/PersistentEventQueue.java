@@ -0,0 +1,417 @@
+package com.mikewinkelmann.logging.appender.http.queue;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.mikewinkelmann.logging.appender.http.event.LoggingEventCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable queue of {@link ILoggingEvent}s in append-only, memory-mapped segment files.
+ * <p>
+ * Taking an event only moves the read position in memory, {@link #commit(long)} acknowledges the events taken
+ * before a {@link #position()} by persisting it and deleting segments which are read completely. Events taken but not committed
+ * are read again after a restart or a {@link #rewind()}, so delivery is at least once. The queue is bounded by
+ * {@code maxSegments * segmentSize} bytes on disk instead of an element count, so {@link #remainingCapacity()}
+ * reports {@link Integer#MAX_VALUE}. Events are read back as
+ * {@link com.mikewinkelmann.logging.appender.http.event.LoggingEventSnapshot}s.
+ *
+ * @author Mike Winkelmann
+ */
+public class PersistentEventQueue extends AbstractQueue<ILoggingEvent> implements BlockingQueue<ILoggingEvent>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistentEventQueue.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int CHECKPOINT_SIZE = 12;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final Deque<MappedSegment> segments = new ArrayDeque<MappedSegment>();
+    private final MappedByteBuffer checkpoint;
+    private MappedSegment readSegment;
+    private int readPosition;
+    private int count;
+    private long lastFsync;
+
+    public PersistentEventQueue(File directory, int segmentSize, int maxSegments, FsyncPolicy fsyncPolicy,
+                                long fsyncIntervalMs) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Could not create directory " + directory.getAbsolutePath());
+        this.checkpoint = MappedSegment.map(new File(directory, CHECKPOINT_FILE), CHECKPOINT_SIZE);
+        this.recover();
+    }
+
+    /**
+     * Opens the existing segments and continues reading at the persisted read position.
+     */
+    private void recover() throws IOException {
+        long checkpointSegmentId = this.checkpoint.getLong(0);
+        int checkpointPosition = this.checkpoint.getInt(8);
+        String[] names = this.directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        Arrays.sort(names);
+        for (String name : names) {
+            long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            File file = new File(this.directory, name);
+            if (id < checkpointSegmentId) {
+                if (!file.delete())
+                    logger.warn("Could not delete acknowledged segment " + file.getAbsolutePath());
+                continue;
+            }
+            this.segments.addLast(MappedSegment.open(id, file, this.segmentSize));
+        }
+        if (this.segments.isEmpty())
+            this.segments.addLast(this.createSegment(checkpointSegmentId));
+        this.seek(checkpointSegmentId, checkpointPosition);
+        if (this.count > 0)
+            logger.info("Replaying " + this.count + " persisted events from " + this.directory.getAbsolutePath());
+    }
+
+    /**
+     * Continues reading at the given position, segments before it are deleted already.
+     */
+    private void seek(long segmentId, int position) {
+        this.readSegment = this.segments.getFirst();
+        this.readPosition = this.readSegment.getId() == segmentId ? position : 0;
+        this.count = this.readSegment.count(this.readPosition);
+        for (MappedSegment segment : this.segments) {
+            if (segment != this.readSegment)
+                this.count += segment.count(0);
+        }
+    }
+
+    private MappedSegment createSegment(long id) throws IOException {
+        return MappedSegment.open(id, new File(this.directory, String.format("%020d", id) + SEGMENT_SUFFIX),
+                this.segmentSize);
+    }
+
+    @Override
+    public boolean offer(ILoggingEvent event) {
+        byte[] record;
+        try {
+            record = LoggingEventCodec.encode(event);
+        } catch (IOException e) {
+            logger.error("Could not encode event:", e);
+            return false;
+        }
+        if (MappedSegment.recordSize(record) > this.segmentSize) {
+            logger.error("Could not persist event of " + record.length + " bytes, it exceeds the segment size of "
+                    + this.segmentSize + " bytes");
+            return false;
+        }
+        this.lock.lock();
+        try {
+            MappedSegment writeSegment = this.segments.getLast();
+            if (!writeSegment.append(record)) {
+                if (this.segments.size() >= this.maxSegments)
+                    return false;
+                this.rollOver(writeSegment).append(record);
+            }
+            this.count++;
+            this.fsync(false);
+            this.notEmpty.signal();
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private MappedSegment rollOver(MappedSegment full) {
+        try {
+            this.fsync(true);
+            MappedSegment next = this.createSegment(full.getId() + 1);
+            this.segments.addLast(next);
+            return next;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create segment in " + this.directory.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public ILoggingEvent poll() {
+        byte[] record;
+        this.lock.lock();
+        try {
+            if (this.count == 0)
+                return null;
+            // a segment may end without a record, e.g. if the process died right after rolling over
+            while (this.readPosition >= this.readSegment.getWritePosition()) {
+                this.readSegment = this.nextSegment(this.readSegment);
+                this.readPosition = 0;
+            }
+            record = this.readSegment.read(this.readPosition);
+            this.readPosition = this.readSegment.next(this.readPosition);
+            this.count--;
+        } finally {
+            this.lock.unlock();
+        }
+        try {
+            return LoggingEventCodec.decode(record);
+        } catch (IOException e) {
+            logger.error("Could not decode persisted event, skipping it:", e);
+            return this.poll();
+        }
+    }
+
+    private MappedSegment nextSegment(MappedSegment segment) {
+        Iterator<MappedSegment> iterator = this.segments.iterator();
+        while (iterator.next() != segment) {
+            // skip to the given segment
+        }
+        return iterator.next();
+    }
+
+    /**
+     * @return the read position after the events taken so far, to {@link #commit(long)} them once they are delivered
+     */
+    public long position() {
+        this.lock.lock();
+        try {
+            return this.readSegment.getId() << 32 | this.readPosition;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Acknowledges all events taken so far, they are not replayed after a restart anymore.
+     */
+    public void commit() {
+        this.commit(this.position());
+    }
+
+    /**
+     * Acknowledges the events taken before the given {@link #position()}, they are not replayed after a restart
+     * anymore. Positions must be committed in the order they were taken.
+     */
+    public void commit(long position) {
+        long segmentId = position >>> 32;
+        this.lock.lock();
+        try {
+            this.checkpoint.putLong(0, segmentId);
+            this.checkpoint.putInt(8, (int) position);
+            this.fsync(false);
+            while (this.segments.getFirst().getId() < segmentId) {
+                MappedSegment acknowledged = this.segments.removeFirst();
+                if (!acknowledged.delete())
+                    logger.warn("Could not delete acknowledged segment " + acknowledged.getId());
+            }
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the read position back to the last committed position, the events taken since are taken again.
+     */
+    public void rewind() {
+        this.lock.lock();
+        try {
+            this.seek(this.checkpoint.getLong(0), this.checkpoint.getInt(8));
+            if (this.count > 0)
+                this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the segment written last and the checkpoint if the {@link FsyncPolicy} requires it.
+     */
+    private void fsync(boolean rollOver) {
+        long now = System.currentTimeMillis();
+        if (this.fsyncPolicy == FsyncPolicy.ALWAYS
+                || this.fsyncPolicy == FsyncPolicy.INTERVAL && (rollOver || now - this.lastFsync >= this.fsyncIntervalMs)) {
+            this.segments.getLast().force();
+            this.checkpoint.force();
+            this.lastFsync = now;
+        }
+    }
+
+    @Override
+    public ILoggingEvent peek() {
+        Iterator<ILoggingEvent> iterator = this.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @Override
+    public void put(ILoggingEvent event) throws InterruptedException {
+        this.offer(event, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean offer(ILoggingEvent event, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        while (!this.offer(event)) {
+            this.lock.lockInterruptibly();
+            try {
+                if (nanos <= 0)
+                    return false;
+                nanos = this.notFull.awaitNanos(nanos);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ILoggingEvent take() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (this.count == 0)
+                this.notEmpty.await();
+        } finally {
+            this.lock.unlock();
+        }
+        return this.poll();
+    }
+
+    @Override
+    public ILoggingEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        this.lock.lockInterruptibly();
+        try {
+            while (this.count == 0) {
+                if (nanos <= 0)
+                    return null;
+                nanos = this.notEmpty.awaitNanos(nanos);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return this.poll();
+    }
+
+    @Override
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.count;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super ILoggingEvent> collection) {
+        return this.drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super ILoggingEvent> collection, int maxElements) {
+        int drained = 0;
+        ILoggingEvent event;
+        while (drained < maxElements && (event = this.poll()) != null) {
+            collection.add(event);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Snapshot of the events not taken yet, intended for diagnostics only.
+     */
+    @Override
+    public Iterator<ILoggingEvent> iterator() {
+        List<ILoggingEvent> snapshot = new ArrayList<ILoggingEvent>();
+        this.lock.lock();
+        try {
+            MappedSegment segment = this.readSegment;
+            int position = this.readPosition;
+            for (int i = 0; i < this.count; i++) {
+                while (position >= segment.getWritePosition()) {
+                    segment = this.nextSegment(segment);
+                    position = 0;
+                }
+                snapshot.add(LoggingEventCodec.decode(segment.read(position)));
+                position = segment.next(position);
+            }
+        } catch (IOException e) {
+            logger.error("Could not decode persisted event:", e);
+        } finally {
+            this.lock.unlock();
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    /**
+     * Deletes the segments, the checkpoint and the directory, once all events were moved to another queue.
+     * The queue cannot be used afterwards.
+     *
+     * @return false if a file could not be deleted
+     */
+    public boolean delete() {
+        this.lock.lock();
+        try {
+            boolean deleted = true;
+            for (MappedSegment segment : this.segments)
+                deleted &= segment.delete();
+            this.segments.clear();
+            deleted &= new File(this.directory, CHECKPOINT_FILE).delete();
+            return deleted & this.directory.delete();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Forces all segments to disk. Events taken but not committed are replayed by the next instance.
+     */
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            if (this.fsyncPolicy != FsyncPolicy.NEVER) {
+                for (MappedSegment segment : this.segments)
+                    segment.force();
+                this.checkpoint.force();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+}
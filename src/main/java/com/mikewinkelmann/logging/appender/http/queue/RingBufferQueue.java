@@ -0,0 +1,201 @@
+package com.mikewinkelmann.logging.appender.http.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi producer / single consumer queue on a preallocated ring of slots.
+ * <p>
+ * Every slot carries a sequence number. Producers claim a position with one CAS on the tail and publish the
+ * element by advancing the slot sequence, the consumer frees the slot by advancing it by one round.
+ * Producers never block each other and never wake the consumer, which instead waits with its {@link WaitStrategy}.
+ * Only one thread at a time may call the consuming methods ({@code poll}, {@code take}, {@code drainTo}).
+ *
+ * @author Mike Winkelmann
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong tail = new PaddedAtomicLong();
+    private final AtomicLong head = new PaddedAtomicLong();
+    // failed checks of the consumer since its last element, so its backoff continues across timed polls
+    private int consumerRound;
+
+    /**
+     * @param minCapacity the capacity is rounded up to the next power of two, and to at least two, because with a
+     *                    single slot the sequence of a published element equals the one of the free slot
+     */
+    public RingBufferQueue(int minCapacity, WaitStrategy waitStrategy) {
+        if (minCapacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        int capacity = Math.max(2, Integer.highestOneBit(minCapacity));
+        if (capacity < minCapacity)
+            capacity <<= 1;
+        this.slots = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            this.sequences.set(i, i);
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException();
+        while (true) {
+            long position = this.tail.get();
+            int index = (int) position & this.mask;
+            long sequence = this.sequences.get(index);
+            if (sequence == position) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.slots[index] = element;
+                    this.sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = this.head.get();
+        int index = (int) position & this.mask;
+        if (this.sequences.get(index) != position + 1)
+            return null;
+        E element = (E) this.slots[index];
+        this.slots[index] = null;
+        this.sequences.lazySet(index, position + this.slots.length);
+        this.head.lazySet(position + 1);
+        return element;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long position = this.head.get();
+        int index = (int) position & this.mask;
+        return this.sequences.get(index) == position + 1 ? (E) this.slots[index] : null;
+    }
+
+    @Override
+    public void put(E element) throws InterruptedException {
+        for (int round = 0; !this.offer(element); round++)
+            this.idle(round, Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int round = 0; !this.offer(element); round++) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return false;
+            this.idle(round, remaining);
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E element;
+        while ((element = this.poll()) == null)
+            this.idle(this.consumerRound++, Long.MAX_VALUE);
+        this.consumerRound = 0;
+        return element;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E element;
+        while ((element = this.poll()) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return null;
+            this.idle(this.consumerRound++, remaining);
+        }
+        this.consumerRound = 0;
+        return element;
+    }
+
+    private void idle(int round, long remainingNanos) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        this.waitStrategy.idle(round, remainingNanos);
+    }
+
+    @Override
+    public int size() {
+        long size = this.tail.get() - this.head.get();
+        return (int) Math.max(0, Math.min(size, this.slots.length));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return this.slots.length - this.size();
+    }
+
+    public int capacity() {
+        return this.slots.length;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection) {
+        return this.drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = this.poll()) != null) {
+            collection.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Weakly consistent snapshot of the published elements, intended for diagnostics only.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<E>(this.size());
+        for (long position = this.head.get(), end = this.tail.get(); position < end; position++) {
+            int index = (int) position & this.mask;
+            Object element = this.slots[index];
+            if (this.sequences.get(index) == position + 1 && element != null)
+                snapshot.add((E) element);
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    /**
+     * Keeps the hot producer and consumer counters on separate cache lines.
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedAtomicLong extends AtomicLong {
+
+        private static final long serialVersionUID = 3457923405982341L;
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.mikewinkelmann.logging.appender.http.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Enum for all supported strategies a thread uses while it waits on a {@link RingBufferQueue}.
+ *
+ * @author Mike Winkelmann
+ */
+public enum WaitStrategy {
+
+    /**
+     * Lowest latency, but keeps one core busy while the queue is empty.
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(int round, long remainingNanos) {
+        }
+    },
+
+    /**
+     * Gives the core to other threads between two checks.
+     */
+    YIELD {
+        @Override
+        void idle(int round, long remainingNanos) {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Sleeps {@link #PARK_NANOS} after the first failed check and doubles the sleep with every further one, up to
+     * {@link #MAX_PARK_NANOS}. Reacts quickly under load and wakes up only about ten times a second while idle.
+     */
+    PARK {
+        @Override
+        void idle(int round, long remainingNanos) {
+            // a negative round has overflowed after a very long wait
+            long nanos = round < 0 || round >= MAX_PARK_SHIFT ? MAX_PARK_NANOS
+                    : Math.min(PARK_NANOS << round, MAX_PARK_NANOS);
+            LockSupport.parkNanos(Math.min(nanos, remainingNanos));
+        }
+    };
+
+    static final long PARK_NANOS = 100000L; // 100 microseconds
+    static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100); // the poll interval of the workers
+    private static final int MAX_PARK_SHIFT = 10;
+
+    /**
+     * @param round          number of failed checks since the thread last got through, starting at 0
+     * @param remainingNanos time left until the wait times out
+     */
+    abstract void idle(int round, long remainingNanos);
+
+}
@@ -0,0 +1,52 @@
+package com.mikewinkelmann.logging.appender.filter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class LoggerPrefixFilterTest {
+
+    @Test
+    public void decidesByTheLoggerName() {
+        LoggerPrefixFilter filter = new LoggerPrefixFilter();
+        filter.setContext(new LoggerContext());
+        filter.addPrefix(" com.foo ");
+        filter.addPrefix("org.partner.Client");
+        filter.setOnMatch(FilterReply.ACCEPT);
+        filter.setOnMismatch(FilterReply.DENY);
+        filter.start();
+
+        assertEquals(FilterReply.ACCEPT, filter.decide(event("com.foo.Bar")));
+        assertEquals(FilterReply.ACCEPT, filter.decide(event("org.partner.Client")));
+        assertEquals(FilterReply.DENY, filter.decide(event("com.foobar.Bar")));
+        assertEquals(FilterReply.DENY, filter.decide(event("org.partner.ClientFactory")));
+    }
+
+    @Test
+    public void isNeutralByDefaultAndUntilStarted() {
+        LoggerPrefixFilter filter = new LoggerPrefixFilter();
+        filter.addPrefix("com.foo");
+        filter.setOnMismatch(FilterReply.DENY);
+
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("org.Bar")));
+        filter.start();
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event("com.foo.Bar")));
+        assertEquals(FilterReply.DENY, filter.decide(event("org.Bar")));
+    }
+
+    private static LoggingEvent event(String loggerName) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName(loggerName);
+        event.setMessage("message");
+        return event;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.mikewinkelmann.logging.appender.filter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class MarkerMatchFilterTest {
+
+    @Test
+    public void matchesMarkersAndTheirReferences() {
+        MarkerMatchFilter filter = new MarkerMatchFilter();
+        filter.setContext(new LoggerContext());
+        filter.addMarker(" ALERT ");
+        filter.addMarker("AUDIT");
+        filter.setOnMatch(FilterReply.ACCEPT);
+        filter.setOnMismatch(FilterReply.DENY);
+        filter.start();
+        Marker security = MarkerFactory.getDetachedMarker("SECURITY");
+        security.add(MarkerFactory.getDetachedMarker("ALERT"));
+
+        assertEquals(FilterReply.ACCEPT, filter.decide(event(MarkerFactory.getDetachedMarker("AUDIT"))));
+        assertEquals(FilterReply.ACCEPT, filter.decide(event(security)));
+        assertEquals(FilterReply.DENY, filter.decide(event(MarkerFactory.getDetachedMarker("ALERTS"))));
+        assertEquals(FilterReply.DENY, filter.decide(event(null)));
+    }
+
+    @Test
+    public void mismatchesEverythingWithoutMarkers() {
+        MarkerMatchFilter filter = new MarkerMatchFilter();
+        filter.setContext(new LoggerContext());
+        filter.setOnMismatch(FilterReply.DENY);
+
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(MarkerFactory.getDetachedMarker("AUDIT"))));
+        filter.start();
+        assertEquals(FilterReply.DENY, filter.decide(event(MarkerFactory.getDetachedMarker("AUDIT"))));
+        assertEquals(FilterReply.DENY, filter.decide(event(null)));
+    }
+
+    private static LoggingEvent event(Marker marker) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName("marker");
+        event.setMessage("message");
+        event.setMarker(marker);
+        return event;
+    }
+
+}
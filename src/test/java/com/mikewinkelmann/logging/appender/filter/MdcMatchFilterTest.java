@@ -0,0 +1,73 @@
+package com.mikewinkelmann.logging.appender.filter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class MdcMatchFilterTest {
+
+    @Test
+    public void matchesThePresenceOfTheKey() {
+        MdcMatchFilter filter = filter("tenant", null);
+
+        assertEquals(FilterReply.ACCEPT, filter.decide(event(Collections.singletonMap("tenant", "a"))));
+        assertEquals(FilterReply.DENY, filter.decide(event(Collections.singletonMap("user", "a"))));
+        assertEquals(FilterReply.DENY, filter.decide(event(Collections.<String, String>emptyMap())));
+        assertEquals(FilterReply.DENY, filter.decide(event(null)));
+    }
+
+    @Test
+    public void matchesTheValueOfTheKey() {
+        MdcMatchFilter filter = filter("tenant", "a");
+
+        assertEquals(FilterReply.ACCEPT, filter.decide(event(Collections.singletonMap("tenant", "a"))));
+        assertEquals(FilterReply.DENY, filter.decide(event(Collections.singletonMap("tenant", "b"))));
+        assertEquals(FilterReply.DENY, filter.decide(event(Collections.singletonMap("user", "a"))));
+        assertEquals(FilterReply.DENY, filter.decide(event(null)));
+    }
+
+    @Test
+    public void doesNotStartWithoutKey() {
+        MdcMatchFilter filter = filter(null, "a");
+
+        assertFalse(filter.isStarted());
+        assertEquals(FilterReply.NEUTRAL, filter.decide(event(Collections.singletonMap("tenant", "a"))));
+    }
+
+    private static MdcMatchFilter filter(String key, String value) {
+        MdcMatchFilter filter = new MdcMatchFilter();
+        filter.setContext(new LoggerContext());
+        filter.setKey(key);
+        filter.setValue(value);
+        filter.setOnMatch(FilterReply.ACCEPT);
+        filter.setOnMismatch(FilterReply.DENY);
+        filter.start();
+        return filter;
+    }
+
+    private static LoggingEvent event(final Map<String, String> mdc) {
+        LoggingEvent event = new LoggingEvent() {
+            @Override
+            public Map<String, String> getMDCPropertyMap() {
+                // events of other sources may come without MDC
+                return mdc;
+            }
+        };
+        event.setLevel(Level.INFO);
+        event.setLoggerName("mdc");
+        event.setMessage("message");
+        return event;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.mikewinkelmann.logging.appender.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class PrefixTrieTest {
+
+    private final PrefixTrie trie = new PrefixTrie();
+
+    @Test
+    public void matchesOnlyAtPackageBoundaries() {
+        this.trie.add("com.foo");
+
+        assertTrue(this.trie.matches("com.foo"));
+        assertTrue(this.trie.matches("com.foo.Bar"));
+        assertTrue(this.trie.matches("com.foo.bar.Baz"));
+        assertFalse(this.trie.matches("com.foobar"));
+        assertFalse(this.trie.matches("com.foobar.Baz"));
+        assertFalse(this.trie.matches("com.fo"));
+        assertFalse(this.trie.matches("com"));
+        assertFalse(this.trie.matches("org.com.foo"));
+        assertFalse(this.trie.matches(""));
+    }
+
+    @Test
+    public void longerPrefixMatchesBehindAShorterOneWithoutBoundary() {
+        this.trie.add("com.fo");
+        this.trie.add("com.foobar");
+
+        assertTrue(this.trie.matches("com.foobar.Baz"));
+        assertTrue(this.trie.matches("com.fo.Bar"));
+        assertFalse(this.trie.matches("com.foo.Bar"));
+        assertFalse(this.trie.matches("com.foobarbaz"));
+    }
+
+    @Test
+    public void shorterPrefixMatchesBeforeALongerOne() {
+        this.trie.add("com.foo.bar.Baz");
+        this.trie.add("com.foo");
+
+        assertTrue(this.trie.matches("com.foo.bar.Qux"));
+        assertTrue(this.trie.matches("com.foo.bar.Baz"));
+        assertFalse(this.trie.matches("com.foox.bar.Baz"));
+    }
+
+    @Test
+    public void matchesClassesAndPrefixesEndingWithADot() {
+        this.trie.add("com.foo.Bar");
+        this.trie.add("org.");
+
+        assertTrue(this.trie.matches("com.foo.Bar"));
+        assertFalse(this.trie.matches("com.foo.BarFactory"));
+        assertTrue(this.trie.matches("org.slf4j.Logger"));
+        assertFalse(this.trie.matches("org"));
+        assertFalse(this.trie.matches("organization.Foo"));
+    }
+
+    @Test
+    public void emptyPrefixMatchesEverything() {
+        this.trie.add("");
+
+        assertTrue(this.trie.matches("com.foo"));
+        assertTrue(this.trie.matches(""));
+    }
+
+    @Test
+    public void emptyTrieMatchesNothing() {
+        assertFalse(this.trie.matches("com.foo"));
+        assertFalse(this.trie.matches(""));
+    }
+
+}
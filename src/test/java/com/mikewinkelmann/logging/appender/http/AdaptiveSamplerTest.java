@@ -0,0 +1,80 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.mikewinkelmann.logging.appender.LoggingLevel;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class AdaptiveSamplerTest {
+
+    private static final int MAX_WEIGHT = 8;
+    private static final int SAMPLES = 80000;
+    // full pressure takes ten updates
+    private static final long TIMEOUT_MS = 20 * AbstractHttpAppenderConfig.SAMPLING_UPDATE_INTERVAL_MS;
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(10);
+    private final AdaptiveSampler sampler = new AdaptiveSampler("sampled", Collections.singletonList(this.queue), 50,
+            1000, 0, MAX_WEIGHT);
+
+    @Test
+    public void keepsEverythingWithoutPressure() {
+        for (LoggingLevel level : LoggingLevel.values())
+            assertEquals(1, this.sampler.sample(level));
+        assertArrayEquals(new int[]{1, 1, 1, 1, 1}, this.sampler.getWeights());
+    }
+
+    @Test
+    public void samplesLowLevelsUnderPressureAndRecoversAfterwards() throws InterruptedException {
+        while (this.queue.remainingCapacity() > 0)
+            this.queue.add(new Object());
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        int[] weights = this.sampler.getWeights();
+        while (weights[LoggingLevel.WARN.ordinal()] < MAX_WEIGHT && System.currentTimeMillis() < deadline) {
+            assertEquals(1, this.sampler.sample(LoggingLevel.ERROR));
+            Thread.sleep(10);
+            int[] previous = weights;
+            weights = this.sampler.getWeights();
+            assertPowersOfTwo(weights);
+            assertEquals(1, weights[LoggingLevel.ERROR.ordinal()]);
+            // the weights only rise while the queue is full, the low levels before WARN
+            for (LoggingLevel level : LoggingLevel.values())
+                assertTrue(weights[level.ordinal()] >= previous[level.ordinal()]);
+            assertTrue(weights[LoggingLevel.INFO.ordinal()] >= weights[LoggingLevel.WARN.ordinal()]);
+        }
+        assertArrayEquals(new int[]{1, MAX_WEIGHT, MAX_WEIGHT, MAX_WEIGHT, MAX_WEIGHT}, weights);
+
+        int errors = 0, infos = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            errors += this.sampler.sample(LoggingLevel.ERROR);
+            int weight = this.sampler.sample(LoggingLevel.INFO);
+            assertTrue(weight == 0 || weight == MAX_WEIGHT);
+            infos += weight;
+        }
+        assertEquals(SAMPLES, errors);
+        // the weights of the kept events add up to about the number of events
+        assertTrue(infos + " of " + SAMPLES, Math.abs(infos - SAMPLES) < SAMPLES / 10);
+
+        // the pressure falls for every interval passed, also without events
+        this.queue.clear();
+        Thread.sleep(TIMEOUT_MS + AbstractHttpAppenderConfig.SAMPLING_UPDATE_INTERVAL_MS);
+        this.sampler.sample(LoggingLevel.INFO);
+        assertArrayEquals(new int[]{1, 1, 1, 1, 1}, this.sampler.getWeights());
+    }
+
+    private static void assertPowersOfTwo(int[] weights) {
+        for (int weight : weights)
+            assertTrue(weight + " is no power of two up to " + MAX_WEIGHT,
+                    weight >= 1 && weight <= MAX_WEIGHT && Integer.bitCount(weight) == 1);
+    }
+
+}
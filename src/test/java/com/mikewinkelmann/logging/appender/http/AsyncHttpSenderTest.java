@@ -0,0 +1,123 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class AsyncHttpSenderTest {
+
+    private static final String BODY = "{\"message\":\"written, not read\"}";
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+    private StubHttpServer server;
+    private ScheduledExecutorService scheduler;
+    private AsyncHttpSender sender;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = new StubHttpServer(1);
+        this.server.setAckListener(new StubHttpServer.AckListener() {
+            @Override
+            public void acknowledged(String uri, String contentType, byte[] body) {
+                received.add(contentType + " " + new String(body, StandardCharsets.UTF_8));
+            }
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.sender = new AsyncHttpSender(RequestConfig.DEFAULT,
+                new ConfigurableKeepAliveStrategy(AbstractHttpAppenderConfig.DEFAULT_KEEP_ALIVE_MS), 2, 2, 2,
+                this.scheduler);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.sender.close();
+        this.scheduler.shutdownNow();
+        this.server.stop();
+    }
+
+    @Test
+    public void sendsEntityWhichOnlySupportsWriteTo() throws Exception {
+        HttpPost post = new HttpPost(this.server.getUrl("/"));
+        post.setEntity(new WriteOnlyEntity());
+        final BlockingQueue<Object> results = new LinkedBlockingQueue<Object>();
+        this.sender.send(post, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                results.add(response.getStatusLine().getStatusCode());
+            }
+
+            @Override
+            public void failed(Exception exception) {
+                results.add(exception);
+            }
+
+            @Override
+            public void cancelled() {
+                results.add("cancelled");
+            }
+        });
+
+        Object result = results.poll(5, TimeUnit.SECONDS);
+        assertEquals(200, result);
+        String request = this.received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        assertEquals("application/json " + BODY, request);
+    }
+
+    /**
+     * Like the multipart entity of httpmime, the content can be written but not read.
+     */
+    private static final class WriteOnlyEntity extends AbstractHttpEntity {
+
+        private WriteOnlyEntity() {
+            this.setContentType("application/json");
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() {
+            throw new UnsupportedOperationException("Write only entity does not implement #getContent()");
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(BODY.getBytes("UTF-8"));
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.mikewinkelmann.logging.appender.http.exception.HttpAppenderException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_MS = 50;
+
+    @Test
+    public void releasedProbeLetsNextRequestProbe() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, OPEN_MS);
+        circuitBreaker.onFailure();
+        assertTrue(circuitBreaker.permitDelayMs() > 0);
+        Thread.sleep(OPEN_MS * 2);
+        assertEquals(0, circuitBreaker.permitDelayMs());
+        assertTrue("only one probe at a time", circuitBreaker.permitDelayMs() > 0);
+
+        circuitBreaker.release();
+
+        assertEquals(0, circuitBreaker.permitDelayMs());
+    }
+
+    @Test
+    public void probeWhichThrowsDoesNotBlockTheAppender() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch delivered = new CountDownLatch(1);
+        AbstractHttpAppender appender = new AbstractHttpAppender() {
+            @Override
+            public HttpRequestBase createHttpRequest(ILoggingEvent event) {
+                return new HttpGet(this.getRequestUrl());
+            }
+
+            @Override
+            public void executeHttpRequest(HttpRequestBase httpRequest) throws HttpAppenderException {
+                switch (calls.incrementAndGet()) {
+                    case 1:
+                        // opens the breaker
+                        throw new HttpAppenderException("Exception caught due to execute http call: ",
+                                new IOException("connection refused"));
+                    case 2:
+                        // the probe ends without a result
+                        throw new IllegalStateException("broken request");
+                    default:
+                        delivered.countDown();
+                }
+            }
+        };
+        appender.setContext(new LoggerContext());
+        appender.setName("probe");
+        appender.setRequestUrl("http://127.0.0.1/");
+        appender.addLoggingLevel("INFO");
+        appender.setMaxRetries(0);
+        appender.setCircuitBreakerFailureThreshold(1);
+        appender.setCircuitBreakerOpenMs(OPEN_MS);
+        appender.setShutdownHook(false);
+        appender.start();
+        try {
+            for (int i = 0; i < 3; i++)
+                appender.doAppend(event("event-" + i));
+            assertTrue("third request was never sent", delivered.await(5, TimeUnit.SECONDS));
+        } finally {
+            appender.stop();
+        }
+    }
+
+    private static ILoggingEvent event(String message) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName("probe");
+        event.setMessage(message);
+        event.setTimeStamp(System.currentTimeMillis());
+        return event;
+    }
+
+}
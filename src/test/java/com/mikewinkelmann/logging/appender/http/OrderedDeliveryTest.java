@@ -0,0 +1,109 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class OrderedDeliveryTest {
+
+    private static final int EVENTS = 10;
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+    private final AtomicBoolean failedOnce = new AtomicBoolean();
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getQuery();
+                // the first event is only delivered by a retry
+                if (query.equals("message=event-0") && failedOnce.compareAndSet(false, true)) {
+                    exchange.sendResponseHeaders(503, -1);
+                } else {
+                    received.add(query);
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                exchange.close();
+            }
+        });
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void retriesKeepTheOrderOfEventsWithTheSameKey() throws Exception {
+        AbstractHttpAppender appender = new AbstractHttpAppender() {
+            @Override
+            public HttpRequestBase createHttpRequest(ILoggingEvent event) {
+                return new HttpGet(this.getRequestUrl() + "?message=" + event.getFormattedMessage());
+            }
+        };
+        appender.setContext(new LoggerContext());
+        appender.setName("ordered");
+        appender.setRequestUrl("http://127.0.0.1:" + this.server.getAddress().getPort() + "/");
+        appender.addLoggingLevel("INFO");
+        appender.setHttpEngine("ASYNC");
+        appender.setMaxInFlight(4);
+        appender.setOrderingKey("LOGGER");
+        appender.setMaxRetries(3);
+        appender.setRetryInitialBackoffMs(100);
+        appender.setShutdownHook(false);
+        appender.start();
+        try {
+            for (int i = 0; i < EVENTS; i++)
+                appender.doAppend(event("event-" + i));
+            List<String> delivered = new ArrayList<String>();
+            for (int i = 0; i < EVENTS; i++) {
+                String query = this.received.poll(5, TimeUnit.SECONDS);
+                if (query != null)
+                    delivered.add(query);
+            }
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < EVENTS; i++)
+                expected.add("message=event-" + i);
+            assertEquals(expected, delivered);
+        } finally {
+            appender.stop();
+        }
+    }
+
+    private static ILoggingEvent event(String message) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName("ordered");
+        event.setMessage(message);
+        event.setTimeStamp(System.currentTimeMillis());
+        return event;
+    }
+
+}
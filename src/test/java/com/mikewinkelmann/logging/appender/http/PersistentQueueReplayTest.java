@@ -0,0 +1,189 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class PersistentQueueReplayTest {
+
+    private static final int EVENTS = 5;
+    private static final int OUTAGE_EVENTS = 20;
+    // four events per segment
+    private static final int SMALL_SEGMENT_SIZE = 256;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+    private final LoggerContext context = new LoggerContext();
+    private StubHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = new StubHttpServer(1);
+        this.server.setAckListener(new StubHttpServer.AckListener() {
+            @Override
+            public void acknowledged(String uri, String contentType, byte[] body) {
+                received.add(uri.substring(uri.indexOf('?') + 1));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop();
+    }
+
+    @Test
+    public void replaysEventsOfFailedRequestsBlocking() throws Exception {
+        this.replaysEventsOfFailedRequests("BLOCKING", 1, 1);
+    }
+
+    @Test
+    public void replaysEventsOfFailedRequestsAsync() throws Exception {
+        this.replaysEventsOfFailedRequests("ASYNC", 1, 1);
+    }
+
+    @Test
+    public void replaysEventsOfRemovedWorkers() throws Exception {
+        this.replaysEventsOfFailedRequests("BLOCKING", 3, 1);
+        assertEquals(Collections.singletonList("worker-0"), Arrays.asList(this.folder.getRoot().list()));
+    }
+
+    @Test
+    public void redeliversEventsOnceTheEndpointRecovers() throws Exception {
+        this.server.setErrorRate(1);
+        AbstractHttpAppender appender = this.createAppender("BLOCKING", 1, 0);
+        appender.setPersistenceSegmentSize(SMALL_SEGMENT_SIZE);
+        appender.setCircuitBreakerFailureThreshold(1);
+        appender.setCircuitBreakerOpenMs(50);
+        appender.start();
+        File queueDirectory = new File(this.folder.getRoot(), "worker-0");
+        try {
+            for (int i = 0; i < OUTAGE_EVENTS; i++)
+                appender.doAppend(event("event-" + i));
+            assertTrue("events spread over several segments", segmentCount(queueDirectory) > 1);
+            // several requests fail after all retries
+            Thread.sleep(300);
+            assertEquals(0, this.received.size());
+
+            this.server.setErrorRate(0);
+            Set<String> redelivered = new LinkedHashSet<String>();
+            while (redelivered.size() < OUTAGE_EVENTS) {
+                String query = this.received.poll(5, TimeUnit.SECONDS);
+                if (query == null)
+                    break;
+                redelivered.add(query);
+            }
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < OUTAGE_EVENTS; i++)
+                expected.add("message=event-" + i);
+            assertEquals(expected, new ArrayList<String>(redelivered));
+
+            // the delivered events are committed and their segments deleted
+            long deadline = System.currentTimeMillis() + 5000;
+            while (segmentCount(queueDirectory) > 1 && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertEquals(1, segmentCount(queueDirectory));
+        } finally {
+            appender.stop();
+        }
+    }
+
+    private void replaysEventsOfFailedRequests(String httpEngine, int workerCount, int restartWorkerCount)
+            throws Exception {
+        this.server.setErrorRate(1);
+        AbstractHttpAppender appender = this.createAppender(httpEngine, workerCount, 0);
+        appender.start();
+        for (int i = 0; i < EVENTS; i++)
+            appender.doAppend(event("event-" + i));
+        appender.stop();
+        assertEquals(0, this.received.size());
+
+        this.server.setErrorRate(0);
+        // retries only cover connections the stub server resets
+        appender = this.createAppender(httpEngine, restartWorkerCount, 3);
+        appender.start();
+        List<String> replayed = new ArrayList<String>();
+        for (int i = 0; i < EVENTS; i++) {
+            String query = this.received.poll(5, TimeUnit.SECONDS);
+            if (query != null)
+                replayed.add(query);
+        }
+        appender.stop();
+        Collections.sort(replayed);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < EVENTS; i++)
+            expected.add("message=event-" + i);
+        assertEquals(expected, replayed);
+    }
+
+    private AbstractHttpAppender createAppender(String httpEngine, int workerCount, int maxRetries) {
+        AbstractHttpAppender appender = new AbstractHttpAppender() {
+            @Override
+            public HttpRequestBase createHttpRequest(ILoggingEvent event) {
+                return new HttpGet(this.getRequestUrl() + "?message=" + event.getFormattedMessage());
+            }
+        };
+        appender.setContext(this.context);
+        appender.setName("replay");
+        appender.setRequestUrl(this.server.getUrl("/"));
+        appender.addLoggingLevel("INFO");
+        appender.setHttpEngine(httpEngine);
+        appender.setWorkerCount(workerCount);
+        appender.setMaxConnectionsPerRoute(workerCount);
+        appender.setMaxConnectionsTotal(workerCount);
+        appender.setQueueType("PERSISTENT");
+        appender.setPersistenceDirectory(this.folder.getRoot().getAbsolutePath());
+        appender.setMaxRetries(maxRetries);
+        appender.setRetryInitialBackoffMs(10);
+        appender.setShutdownHook(false);
+        return appender;
+    }
+
+    private static int segmentCount(File directory) {
+        return directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".seg");
+            }
+        }).length;
+    }
+
+    private static ILoggingEvent event(String message) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName("replay");
+        event.setMessage(message);
+        event.setTimeStamp(System.currentTimeMillis());
+        return event;
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.mikewinkelmann.logging.appender.LoggingLevel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class RateLimiterTest {
+
+    private static final int THREADS = 8;
+    private static final long CONTENTION_MS = 300;
+
+    @Test
+    public void admitsABurstAtOnce() {
+        RateLimiter rateLimiter = new RateLimiter(10, 5);
+        for (int i = 0; i < 5; i++)
+            assertEquals(0, rateLimiter.tryAcquire());
+
+        long wait = rateLimiter.tryAcquire();
+        assertTrue(wait > 0);
+        // the next permit is at most one interval of 100 ms away
+        assertTrue(wait <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void spacesPermitsAtTheRateOnceTheBurstIsUsed() {
+        RateLimiter rateLimiter = new RateLimiter(100, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 21; i++)
+            assertTrue(rateLimiter.tryAcquire(1, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // the first permit is free, the other 20 are 10 ms apart
+        assertTrue(elapsedMs + " ms", elapsedMs >= 195);
+        assertTrue(elapsedMs + " ms", elapsedMs < 2000);
+    }
+
+    @Test
+    public void timedAcquireGivesUpAtTheTimeout() {
+        RateLimiter rateLimiter = new RateLimiter(1, 1);
+        assertEquals(0, rateLimiter.tryAcquire());
+
+        long start = System.nanoTime();
+        assertFalse(rateLimiter.tryAcquire(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void appliesARateChangeOfTheRuntimeConfig() {
+        RuntimeConfig config = config(1, 1);
+        RateLimiter slow = config.getRateLimiter(LoggingLevel.INFO);
+        assertEquals(0, slow.tryAcquire());
+        assertTrue(slow.tryAcquire() > 0);
+
+        // a change of other settings keeps the state of the buckets
+        Properties linger = new Properties();
+        linger.setProperty(RuntimeConfig.LINGER_MS, "10");
+        assertSame(slow, config.with(linger).getRateLimiter(LoggingLevel.INFO));
+
+        Properties rate = new Properties();
+        rate.setProperty(RuntimeConfig.RATE_LIMIT, "1000");
+        rate.setProperty(RuntimeConfig.RATE_LIMIT_BURST, "50");
+        rate.setProperty(RuntimeConfig.LEVEL_RATE_LIMITS, "ERROR:0");
+        RuntimeConfig changed = config.with(rate);
+        RateLimiter fast = changed.getRateLimiter(LoggingLevel.INFO);
+        assertNotSame(slow, fast);
+        for (int i = 0; i < 50; i++)
+            assertEquals(0, fast.tryAcquire());
+        assertTrue(fast.tryAcquire() > 0);
+        assertNull(changed.getRateLimiter(LoggingLevel.ERROR));
+        assertEquals(1000, changed.getRateLimit(), 0);
+    }
+
+    @Test
+    public void neverAdmitsMoreThanTheBurstAndRateUnderContention() throws Exception {
+        final RateLimiter rateLimiter = new RateLimiter(1000, 100);
+        final AtomicInteger admitted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] window = new long[2];
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long end = window[0] + TimeUnit.MILLISECONDS.toNanos(CONTENTION_MS);
+                    while (System.nanoTime() < end) {
+                        if (rateLimiter.tryAcquire() == 0)
+                            admitted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        window[0] = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        window[1] = System.nanoTime();
+
+        double elapsedSeconds = (window[1] - window[0]) / 1e9;
+        int maxAdmitted = (int) (100 + 1000 * elapsedSeconds) + 1;
+        assertTrue(admitted.get() + " > " + maxAdmitted, admitted.get() <= maxAdmitted);
+        // the threads kept taking the permits as they became available
+        assertTrue(admitted.get() + " of " + maxAdmitted, admitted.get() >= 100 + 1000 * CONTENTION_MS / 1000 / 2);
+    }
+
+    private static RuntimeConfig config(double rateLimit, int rateLimitBurst) {
+        double[] levelRateLimits = new double[LoggingLevel.values().length];
+        Arrays.fill(levelRateLimits, RuntimeConfig.UNSET_RATE);
+        return new RuntimeConfig(RuntimeConfig.levelBit("INFO"), "http://127.0.0.1/", 1000, 1000, 1000, false, 10,
+                100000, 0, rateLimit, rateLimitBurst, levelRateLimits, new int[LoggingLevel.values().length], null);
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.google.common.io.ByteStreams;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class RequestCompressorTest {
+
+    // empty, tiny, around the initial buffer size and larger than the retained buffers
+    private static final int[] SIZES = {0, 1, 100, 8191, 8192, 8193, 100000,
+            RequestCompressor.MAX_RETAINED_BUFFER_SIZE * 2, 10, 5000};
+
+    private final Random random = new Random(42);
+    private RequestCompressor compressor;
+
+    @After
+    public void tearDown() {
+        if (this.compressor != null)
+            this.compressor.end();
+    }
+
+    @Test
+    public void gzipRoundTripsBodiesOfVariedSizesWithOneCompressor() throws IOException {
+        this.compressor = new RequestCompressor(Compression.GZIP, 0);
+        for (int size : SIZES) {
+            for (boolean compressible : new boolean[]{true, false}) {
+                byte[] body = this.body(size, compressible);
+                HttpEntity entity = this.compress(body);
+
+                assertEquals("gzip", entity.getContentEncoding().getValue());
+                assertEquals(ContentType.APPLICATION_JSON.toString(), entity.getContentType().getValue());
+                assertArrayEquals("size " + size, body, ByteStreams.toByteArray(
+                        new GZIPInputStream(new ByteArrayInputStream(EntityUtils.toByteArray(entity)))));
+            }
+        }
+    }
+
+    @Test
+    public void deflateRoundTripsBodiesOfVariedSizesWithOneCompressor() throws IOException {
+        this.compressor = new RequestCompressor(Compression.DEFLATE, 0);
+        for (int size : SIZES) {
+            for (boolean compressible : new boolean[]{true, false}) {
+                byte[] body = this.body(size, compressible);
+                HttpEntity entity = this.compress(body);
+
+                assertEquals("deflate", entity.getContentEncoding().getValue());
+                assertArrayEquals("size " + size, body, ByteStreams.toByteArray(
+                        new InflaterInputStream(new ByteArrayInputStream(EntityUtils.toByteArray(entity)))));
+            }
+        }
+    }
+
+    @Test
+    public void leavesSmallBodiesUncompressed() throws IOException {
+        this.compressor = new RequestCompressor(Compression.GZIP, 1024);
+        byte[] body = this.body(1023, true);
+
+        HttpPost known = post(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        HttpEntity knownEntity = known.getEntity();
+        this.compressor.compress(known);
+        assertSame(knownEntity, known.getEntity());
+
+        // a body of unknown length is consumed and replaced by an uncompressed copy
+        HttpPost unknown = post(new InputStreamEntity(new ByteArrayInputStream(body), -1,
+                ContentType.APPLICATION_JSON));
+        this.compressor.compress(unknown);
+        assertNull(unknown.getEntity().getContentEncoding());
+        assertArrayEquals(body, EntityUtils.toByteArray(unknown.getEntity()));
+    }
+
+    @Test
+    public void compressesBodiesOfUnknownLength() throws IOException {
+        this.compressor = new RequestCompressor(Compression.GZIP, 1024);
+        byte[] body = this.body(100000, true);
+        HttpPost request = post(new InputStreamEntity(new ByteArrayInputStream(body), -1,
+                ContentType.APPLICATION_JSON));
+
+        this.compressor.compress(request);
+
+        byte[] compressed = EntityUtils.toByteArray(request.getEntity());
+        assertArrayEquals(body, ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void ignoresRequestsWithoutBody() throws IOException {
+        this.compressor = new RequestCompressor(Compression.GZIP, 0);
+        this.compressor.compress(new HttpGet("http://127.0.0.1/"));
+    }
+
+    private HttpEntity compress(byte[] body) throws IOException {
+        HttpPost request = post(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        this.compressor.compress(request);
+        return request.getEntity();
+    }
+
+    private byte[] body(int size, boolean compressible) {
+        byte[] body = new byte[size];
+        if (compressible) {
+            for (int i = 0; i < size; i++)
+                body[i] = (byte) ('a' + (i / 7) % 26);
+        } else {
+            this.random.nextBytes(body);
+        }
+        return body;
+    }
+
+    private static HttpPost post(HttpEntity entity) {
+        HttpPost request = new HttpPost("http://127.0.0.1/");
+        request.setEntity(entity);
+        return request;
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.mikewinkelmann.logging.appender.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * In-process http endpoint on a free local port which reads every request body and answers with 200,
+ * or the configured {@code successStatusCode}.
+ * <p>
+ * To reproduce a saturated collector it can delay every response by {@code latencyMs}, fail a share of
+ * {@code errorRate} requests with {@code errorStatusCode} and a {@code Retry-After} header, and read request
+ * bodies at no more than {@code readBytesPerSecond}. The settings can be changed while the server runs.
+ * <p>
+ * Shared by the tests and, through the test jar, by the benchmarks module.
+ *
+ * @author Mike Winkelmann
+ */
+public class StubHttpServer implements HttpHandler {
+
+    /**
+     * Receives the request of every successful response, after the response was sent.
+     */
+    public interface AckListener {
+
+        /**
+         * @param uri         the request uri including the query
+         * @param contentType the {@code Content-Type} header of the request, null if it has none
+         * @param body        the request body, decompressed according to its {@code Content-Encoding}
+         */
+        void acknowledged(String uri, String contentType, byte[] body);
+
+    }
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failedResponses = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    private volatile int successStatusCode = 200;
+    private volatile long latencyMs = 0;
+    private volatile double errorRate = 0;
+    private volatile int errorStatusCode = 503;
+    private volatile long retryAfterSeconds = 0;
+    private volatile long readBytesPerSecond = 0;
+    private volatile AckListener ackListener;
+
+    public StubHttpServer(int threads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this);
+        this.server.start();
+    }
+
+    public String getUrl(String path) {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort() + path;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            AckListener listener = this.ackListener;
+            byte[] body = this.readBody(exchange.getRequestBody(), listener != null);
+            if (this.latencyMs > 0)
+                Thread.sleep(this.latencyMs);
+            if (this.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+                if (this.retryAfterSeconds > 0)
+                    exchange.getResponseHeaders().set("Retry-After", Long.toString(this.retryAfterSeconds));
+                exchange.sendResponseHeaders(this.errorStatusCode, -1);
+                this.failedResponses.incrementAndGet();
+                return;
+            }
+            exchange.sendResponseHeaders(this.successStatusCode, -1);
+            if (listener != null)
+                listener.acknowledged(exchange.getRequestURI().toString(),
+                        exchange.getRequestHeaders().getFirst("Content-Type"),
+                        decode(body, exchange.getRequestHeaders().getFirst("Content-Encoding")));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+            this.requests.incrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the body, pausing after every chunk while the read rate is above {@code readBytesPerSecond}.
+     *
+     * @return the body if {@code keep} is set, otherwise null
+     */
+    private byte[] readBody(InputStream body, boolean keep) throws IOException, InterruptedException {
+        ByteArrayOutputStream content = keep ? new ByteArrayOutputStream() : null;
+        long bytesPerSecond = this.readBytesPerSecond;
+        byte[] buffer = new byte[bytesPerSecond > 0
+                ? (int) Math.max(1, Math.min(READ_BUFFER_SIZE, bytesPerSecond / 10)) : READ_BUFFER_SIZE];
+        long start = System.nanoTime();
+        long total = 0;
+        for (int read; (read = body.read(buffer)) != -1; ) {
+            this.bytesReceived.addAndGet(read);
+            if (content != null)
+                content.write(buffer, 0, read);
+            total += read;
+            if (bytesPerSecond > 0) {
+                long aheadNanos = total * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond - (System.nanoTime() - start);
+                if (aheadNanos > 0)
+                    TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            }
+        }
+        return content != null ? content.toByteArray() : null;
+    }
+
+    private static byte[] decode(byte[] body, String contentEncoding) throws IOException {
+        if (contentEncoding == null || body.length == 0)
+            return body;
+        InputStream encoded = new ByteArrayInputStream(body);
+        InputStream decoded = "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(encoded)
+                : "deflate".equalsIgnoreCase(contentEncoding) ? new InflaterInputStream(encoded) : encoded;
+        ByteArrayOutputStream content = new ByteArrayOutputStream(body.length * 4);
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        for (int read; (read = decoded.read(buffer)) != -1; )
+            content.write(buffer, 0, read);
+        return content.toByteArray();
+    }
+
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * @return number of requests answered with {@code errorStatusCode}
+     */
+    public long getFailedResponses() {
+        return this.failedResponses.get();
+    }
+
+    public long getBytesReceived() {
+        return this.bytesReceived.get();
+    }
+
+    /**
+     * @param successStatusCode status of successful responses, e.g. 201 like the HockeyApp crash api
+     */
+    public void setSuccessStatusCode(int successStatusCode) {
+        this.successStatusCode = successStatusCode;
+    }
+
+    /**
+     * @param latencyMs delay of every response after the body was read
+     */
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * @param errorRate share of requests between 0 and 1 answered with {@code errorStatusCode}
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setErrorStatusCode(int errorStatusCode) {
+        this.errorStatusCode = errorStatusCode;
+    }
+
+    /**
+     * @param retryAfterSeconds {@code Retry-After} header of failed responses, 0 to omit it
+     */
+    public void setRetryAfterSeconds(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @param readBytesPerSecond maximum rate request bodies are read at per connection, 0 for no limit
+     */
+    public void setReadBytesPerSecond(long readBytesPerSecond) {
+        this.readBytesPerSecond = readBytesPerSecond;
+    }
+
+    public void setAckListener(AckListener ackListener) {
+        this.ackListener = ackListener;
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import com.google.common.base.Charsets;
+import com.mikewinkelmann.logging.appender.http.event.LoggingEventCodec;
+import com.mikewinkelmann.logging.appender.http.event.LoggingEventSnapshot;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class AggregatedCrashEventTest {
+
+    @Test
+    public void survivesThePersistentQueueEncoding() throws IOException {
+        ILoggingEvent crash = LoggingEventSnapshot.of(crash());
+        AggregatedCrashEvent aggregated = new AggregatedCrashEvent(crash, 7, 1000, 2000);
+
+        ILoggingEvent restored = AggregatedCrashEvent.restore(
+                LoggingEventCodec.decode(LoggingEventCodec.encode(aggregated)));
+
+        assertTrue(restored instanceof AggregatedCrashEvent);
+        AggregatedCrashEvent restoredAggregate = (AggregatedCrashEvent) restored;
+        assertEquals(7, restoredAggregate.getOccurrences());
+        assertEquals(1000, restoredAggregate.getFirstSeen());
+        assertEquals(2000, restoredAggregate.getLastSeen());
+        assertEquals("boom", restoredAggregate.getFormattedMessage());
+        assertEquals(IllegalStateException.class.getName(), restoredAggregate.getThrowableProxy().getClassName());
+        assertEquals("value", restoredAggregate.getMDCPropertyMap().get("key"));
+    }
+
+    @Test
+    public void keepsTheContextThroughThePersistentQueueEncoding() throws IOException {
+        byte[] context = "12:00:00.000 INFO  [main] crash - before\n".getBytes(Charsets.UTF_8);
+        ILoggingEvent crash = new CrashContextEvent(LoggingEventSnapshot.of(crash()), context);
+        AggregatedCrashEvent aggregated = new AggregatedCrashEvent(crash, 2, 1000, 2000);
+
+        ILoggingEvent restoredCrash = AggregatedCrashEvent.restore(
+                LoggingEventCodec.decode(LoggingEventCodec.encode(crash)));
+        ILoggingEvent restoredAggregate = AggregatedCrashEvent.restore(
+                LoggingEventCodec.decode(LoggingEventCodec.encode(aggregated)));
+
+        assertTrue(restoredCrash instanceof CrashContextEvent);
+        assertArrayEquals(context, ((CrashContextEvent) restoredCrash).getContext());
+        assertTrue(restoredAggregate instanceof AggregatedCrashEvent);
+        ILoggingEvent lastEvent = ((AggregatedCrashEvent) restoredAggregate).getLastEvent();
+        assertTrue(lastEvent instanceof CrashContextEvent);
+        assertArrayEquals(context, ((CrashContextEvent) lastEvent).getContext());
+    }
+
+    @Test
+    public void leavesPlainEventsAsTheyAre() throws IOException {
+        ILoggingEvent decoded = LoggingEventCodec.decode(LoggingEventCodec.encode(crash()));
+
+        assertSame(decoded, AggregatedCrashEvent.restore(decoded));
+    }
+
+    private static ILoggingEvent crash() {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.ERROR);
+        event.setLoggerName("crash");
+        event.setMessage("boom");
+        event.setTimeStamp(2000);
+        event.setThrowableProxy(new ThrowableProxy(new IllegalStateException("same")));
+        event.setMDCPropertyMap(Collections.singletonMap("key", "value"));
+        return event;
+    }
+
+}
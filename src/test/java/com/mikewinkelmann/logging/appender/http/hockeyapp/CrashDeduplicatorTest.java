@@ -0,0 +1,87 @@
+package com.mikewinkelmann.logging.appender.http.hockeyapp;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import com.google.common.base.Charsets;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class CrashDeduplicatorTest {
+
+    private static final long WINDOW_MS = 60000;
+    // the same stack for every crash
+    private static final IllegalStateException CRASH = new IllegalStateException("same");
+
+    private final List<AggregatedCrashEvent> reported = new ArrayList<AggregatedCrashEvent>();
+    private final ThreadLocal<CrashContextBuffer> contextBuffers = new ThreadLocal<CrashContextBuffer>() {
+        @Override
+        protected CrashContextBuffer initialValue() {
+            return new CrashContextBuffer(10, 4096);
+        }
+    };
+    private final CrashDeduplicator deduplicator = new CrashDeduplicator(WINDOW_MS, 100, 10, this.contextBuffers,
+            new CrashDeduplicator.Listener() {
+                @Override
+                public void onAggregatedCrash(AggregatedCrashEvent event) {
+                    reported.add(event);
+                }
+            });
+
+    @Test
+    public void aggregatesDuplicatesWithTheContextOfTheFirstDuplicate() {
+        assertFalse(this.deduplicator.isDuplicate(this.log("first crash", 1000)));
+        assertTrue(this.deduplicator.isDuplicate(this.log("second crash", 2000)));
+        assertTrue(this.deduplicator.isDuplicate(this.log("third crash", 3000)));
+
+        this.deduplicator.flush();
+
+        assertEquals(1, this.reported.size());
+        AggregatedCrashEvent aggregated = this.reported.get(0);
+        assertEquals(2, aggregated.getOccurrences());
+        assertEquals(2000, aggregated.getFirstSeen());
+        assertEquals(3000, aggregated.getLastSeen());
+        assertEquals("third crash", aggregated.getFormattedMessage());
+        assertTrue(aggregated.getLastEvent() instanceof CrashContextEvent);
+        String context = new String(((CrashContextEvent) aggregated.getLastEvent()).getContext(), Charsets.UTF_8);
+        assertTrue(context, context.contains("second crash"));
+        assertFalse(context, context.contains("third crash"));
+    }
+
+    @Test
+    public void reportsTheNextCrashAfterTheFirstOneWasDropped() {
+        ILoggingEvent first = this.log("first crash", 1000);
+        assertFalse(this.deduplicator.isDuplicate(first));
+
+        this.deduplicator.dropped(first);
+
+        assertFalse(this.deduplicator.isDuplicate(this.log("second crash", 2000)));
+        assertEquals(0, this.reported.size());
+    }
+
+    /**
+     * Records the crash into the context of the thread first, like the appender does.
+     */
+    private ILoggingEvent log(String message, long timeStamp) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.ERROR);
+        event.setLoggerName("crash");
+        event.setThreadName("main");
+        event.setMessage(message);
+        event.setTimeStamp(timeStamp);
+        event.setThrowableProxy(new ThrowableProxy(CRASH));
+        this.contextBuffers.get().record(event);
+        return event;
+    }
+
+}
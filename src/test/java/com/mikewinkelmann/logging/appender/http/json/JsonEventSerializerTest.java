@@ -0,0 +1,101 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class JsonEventSerializerTest {
+
+    @Test
+    public void writesAllFieldsAsArray() throws IOException {
+        JsonEventSerializer serializer = new JsonEventSerializer(JsonFormat.ARRAY, true, null, "@timestamp", "level",
+                "logger", "thread", "message", "mdc", "throwable");
+        Map<String, String> mdc = new LinkedHashMap<String, String>();
+        mdc.put("user", "a\"b");
+        mdc.put("request", "</1>");
+
+        String json = write(serializer, event("first", mdc), event("second", null));
+
+        assertEquals("[{\"@timestamp\":\"2014-03-01T12:30:05.123Z\",\"level\":\"INFO\",\"logger\":\"json\","
+                + "\"thread\":\"main\",\"message\":\"first\",\"mdc\":{\"user\":\"a\\\"b\",\"request\":\"<\\/1>\"}},"
+                + "{\"@timestamp\":\"2014-03-01T12:30:05.123Z\",\"level\":\"INFO\",\"logger\":\"json\","
+                + "\"thread\":\"main\",\"message\":\"second\"}]", json);
+    }
+
+    @Test
+    public void writesOneLinePerEventWithBulkActions() throws IOException {
+        JsonEventSerializer serializer = new JsonEventSerializer(JsonFormat.NDJSON, false, "index", "time", null,
+                null, null, "message", null, null);
+
+        String json = write(serializer, event("first", null), event("second\nline", null));
+
+        assertEquals("{\"index\":{}}\n{\"time\":1393677005123,\"message\":\"first\"}\n"
+                + "{\"index\":{}}\n{\"time\":1393677005123,\"message\":\"second\\nline\"}\n", json);
+    }
+
+    @Test
+    public void leavesOutExcludedFields() throws IOException {
+        // an excluded field has no name, the appender passes null or an empty one
+        JsonEventSerializer serializer = new JsonEventSerializer(JsonFormat.NDJSON, true, "", "", null, "logger",
+                "", "message", null, "");
+        LoggingEvent event = event("message", Collections.singletonMap("key", "value"));
+        event.setThrowableProxy(new ThrowableProxy(new IllegalStateException("boom")));
+
+        assertEquals("{\"logger\":\"json\",\"message\":\"message\"}\n", write(serializer, event));
+    }
+
+    @Test
+    public void writesThrowablesLikePrintStackTrace() throws IOException {
+        JsonEventSerializer serializer = new JsonEventSerializer(JsonFormat.NDJSON, true, null, null, null, null,
+                null, null, null, "throwable");
+        IllegalStateException throwable = new IllegalStateException("outer \"quoted\"",
+                new IllegalArgumentException("inner"));
+        throwable.addSuppressed(new UnsupportedOperationException());
+        LoggingEvent event = event("message", null);
+        event.setThrowableProxy(new ThrowableProxy(throwable));
+
+        String json = write(serializer, event);
+
+        String prefix = "{\"throwable\":\"java.lang.IllegalStateException: outer \\\"quoted\\\"\\n\\tat "
+                + JsonEventSerializerTest.class.getName()
+                + ".writesThrowablesLikePrintStackTrace(JsonEventSerializerTest.java:";
+        assertTrue(json, json.startsWith(prefix));
+        assertTrue(json, json.contains("\\nSuppressed: java.lang.UnsupportedOperationException\\n\\tat "));
+        // created in the same frame as the outer throwable
+        assertTrue(json, json.contains("\\nCaused by: java.lang.IllegalArgumentException: inner\\n\\t... "));
+        assertTrue(json, json.endsWith(" common frames omitted\"}\n"));
+    }
+
+    static String write(JsonEventSerializer serializer, ILoggingEvent... events) throws IOException {
+        StringWriter out = new StringWriter();
+        serializer.write(Arrays.asList(events), new JsonWriter(out));
+        return out.toString();
+    }
+
+    static LoggingEvent event(String message, Map<String, String> mdc) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName("json");
+        event.setThreadName("main");
+        event.setMessage(message);
+        event.setTimeStamp(1393677005123L);
+        event.setMDCPropertyMap(mdc != null ? mdc : Collections.<String, String>emptyMap());
+        return event;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class JsonEventsEntityTest {
+
+    private final JsonEventSerializer serializer = new JsonEventSerializer(JsonFormat.ARRAY, true, null,
+            "@timestamp", "level", "logger", "thread", "message", "mdc", "throwable");
+
+    @Test
+    public void writesTheSameBodyEveryTime() throws IOException {
+        JsonEventsEntity entity = new JsonEventsEntity(Arrays.<ILoggingEvent>asList(
+                JsonEventSerializerTest.event("first \u00e4\uD83D\uDE00", Collections.singletonMap("k", "v")),
+                JsonEventSerializerTest.event("second", null)), this.serializer);
+
+        byte[] first = write(entity);
+        byte[] second = write(entity);
+
+        assertTrue(entity.isRepeatable());
+        assertArrayEquals(first, second);
+        assertArrayEquals(first, ByteStreams.toByteArray(entity.getContent()));
+        assertEquals(JsonEventSerializerTest.write(this.serializer,
+                JsonEventSerializerTest.event("first \u00e4\uD83D\uDE00", Collections.singletonMap("k", "v")),
+                JsonEventSerializerTest.event("second", null)), new String(first, Charsets.UTF_8));
+    }
+
+    @Test
+    public void isSentChunkedWithTheContentTypeOfTheFormat() {
+        JsonEventsEntity entity = new JsonEventsEntity(Collections.<ILoggingEvent>emptyList(), new JsonEventSerializer(
+                JsonFormat.NDJSON, true, null, null, null, null, null, "message", null, null));
+
+        assertEquals(-1, entity.getContentLength());
+        assertTrue(entity.isChunked());
+        assertEquals("application/x-ndjson; charset=UTF-8", entity.getContentType().getValue());
+    }
+
+    private static byte[] write(JsonEventsEntity entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return out.toByteArray();
+    }
+
+}
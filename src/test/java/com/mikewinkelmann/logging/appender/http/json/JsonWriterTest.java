@@ -0,0 +1,70 @@
+package com.mikewinkelmann.logging.appender.http.json;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class JsonWriterTest {
+
+    private final StringWriter out = new StringWriter();
+    private final JsonWriter writer = new JsonWriter(this.out);
+
+    @Test
+    public void escapesQuotesBackslashesAndControlCharacters() throws IOException {
+        this.writer.value("\"quoted\" back\\slash\n\r\t\u0000\u0001\u001f\u007f\u2028\u2029");
+
+        assertEquals("\"\\\"quoted\\\" back\\\\slash\\n\\r\\t\\u0000\\u0001\\u001f\u007f\\u2028\\u2029\"",
+                this.out.toString());
+    }
+
+    @Test
+    public void keepsSurrogatePairs() throws IOException {
+        this.writer.value("\uD83D\uDE00 \uD834\uDD1E");
+
+        assertEquals("\"\uD83D\uDE00 \uD834\uDD1E\"", this.out.toString());
+    }
+
+    @Test
+    public void escapesTheSlashOfClosingTags() throws IOException {
+        this.writer.beginArray()
+                .value("</script><script>/x/</")
+                .beginString().stringPart("a<").stringPart('/').stringPart("b <").stringPart(1).stringPart("/")
+                .endString()
+                .value("/starts with a slash")
+                .endArray();
+
+        assertEquals("[\"<\\/script><script>/x/<\\/\",\"a<\\/b <1/\",\"/starts with a slash\"]", this.out.toString());
+    }
+
+    @Test
+    public void separatesNamesValuesAndNestedStructures() throws IOException {
+        this.writer.beginArray()
+                .beginObject().name("a").value(1).name("b").value((String) null)
+                .name("c").beginObject().name("d").beginArray().value("e").value(2).endArray().endObject()
+                .endObject()
+                .beginObject().endObject()
+                .endArray();
+
+        assertEquals("[{\"a\":1,\"b\":null,\"c\":{\"d\":[\"e\",2]}},{}]", this.out.toString());
+    }
+
+    @Test
+    public void writesIsoTimestampsInUtc() throws IOException {
+        this.writer.beginArray()
+                .isoTimestamp(0)
+                .isoTimestamp(1393677005123L)
+                .isoTimestamp(951782400000L) // leap day 2000
+                .isoTimestamp(-1)
+                .endArray();
+
+        assertEquals("[\"1970-01-01T00:00:00.000Z\",\"2014-03-01T12:30:05.123Z\",\"2000-02-29T00:00:00.000Z\","
+                + "\"1969-12-31T23:59:59.999Z\"]", this.out.toString());
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.mikewinkelmann.logging.appender.http.queue;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.google.common.base.Strings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class PersistentEventQueueTest {
+
+    // four events per segment
+    private static final int SEGMENT_SIZE = 256;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rejectsEventsLargerThanASegment() throws IOException {
+        PersistentEventQueue queue = this.open(4);
+        assertFalse(queue.offer(event(Strings.repeat("x", SEGMENT_SIZE))));
+        assertTrue(queue.offer(event("event-0")));
+        assertFalse(queue.offer(event(Strings.repeat("x", SEGMENT_SIZE))));
+        assertTrue(queue.offer(event("event-1")));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, this.segmentFiles().length);
+        assertEquals("event-0", queue.poll().getFormattedMessage());
+        assertEquals("event-1", queue.poll().getFormattedMessage());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void skipsSegmentsWithoutEvents() throws IOException {
+        PersistentEventQueue queue = this.open(4);
+        for (int i = 0; i < 8; i++)
+            assertTrue(queue.offer(event("event-" + i)));
+        queue.close();
+        File[] segments = this.segmentFiles();
+        assertEquals(2, segments.length);
+        // an empty segment between two others, like a roll over the process did not survive
+        assertTrue(segments[1].renameTo(new File(this.folder.getRoot(), String.format("%020d", 2) + ".seg")));
+        assertTrue(new File(this.folder.getRoot(), String.format("%020d", 1) + ".seg").createNewFile());
+
+        queue = this.open(4);
+        assertEquals(8, queue.size());
+        for (int i = 0; i < 8; i++)
+            assertEquals("event-" + i, queue.poll().getFormattedMessage());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void rewindsToTheCommittedPosition() throws IOException {
+        PersistentEventQueue queue = this.open(4);
+        for (int i = 0; i < 6; i++)
+            assertTrue(queue.offer(event("event-" + i)));
+        queue.poll();
+        queue.commit();
+        queue.poll();
+        queue.poll();
+
+        queue.rewind();
+
+        assertEquals(5, queue.size());
+        assertEquals("event-1", queue.poll().getFormattedMessage());
+    }
+
+    private PersistentEventQueue open(int maxSegments) throws IOException {
+        return new PersistentEventQueue(this.folder.getRoot(), SEGMENT_SIZE, maxSegments, FsyncPolicy.NEVER, 0);
+    }
+
+    private File[] segmentFiles() {
+        File[] files = this.folder.getRoot().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".seg");
+            }
+        });
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static ILoggingEvent event(String message) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName("queue");
+        event.setMessage(message);
+        event.setTimeStamp(System.currentTimeMillis());
+        return event;
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.mikewinkelmann.logging.appender.http.queue;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.mikewinkelmann.logging.appender.http.AbstractHttpAppender;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Mike Winkelmann
+ */
+public class RingBufferQueueTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int EVENTS_PER_PRODUCER = 20000;
+    // small enough that the producers wrap around the ring many times
+    private static final int STRESS_CAPACITY = 256;
+
+    @Test
+    public void roundsTheCapacityUpToAPowerOfTwo() {
+        assertEquals(2, new RingBufferQueue<Integer>(1, WaitStrategy.PARK).capacity());
+        assertEquals(2, new RingBufferQueue<Integer>(2, WaitStrategy.PARK).capacity());
+        assertEquals(8, new RingBufferQueue<Integer>(5, WaitStrategy.PARK).capacity());
+        assertEquals(8, new RingBufferQueue<Integer>(8, WaitStrategy.PARK).capacity());
+        assertEquals(16, new RingBufferQueue<Integer>(9, WaitStrategy.PARK).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyCapacity() {
+        new RingBufferQueue<Integer>(0, WaitStrategy.PARK);
+    }
+
+    @Test
+    public void dropsTheNewestElementIfFull() {
+        // DROP_NEWEST and the offer of DROP_BELOW_LEVEL
+        RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(4, WaitStrategy.PARK);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(4 - i, queue.remainingCapacity());
+            assertTrue(queue.offer(i));
+        }
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertEquals(1, queue.remainingCapacity());
+        assertTrue(queue.offer(5));
+        for (int expected : new int[]{1, 2, 3, 5})
+            assertEquals(Integer.valueOf(expected), queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotDropTheOldestElement() {
+        // the consumer side is reserved to the worker
+        AbstractHttpAppender appender = new AbstractHttpAppender() {
+            @Override
+            public HttpRequestBase createHttpRequest(ILoggingEvent event) {
+                return new HttpGet(this.getRequestUrl());
+            }
+        };
+        appender.setContext(new LoggerContext());
+        appender.setRequestUrl("http://127.0.0.1/");
+        appender.setQueueType("RING_BUFFER");
+        appender.setOverflowPolicy("DROP_OLDEST");
+        appender.setShutdownHook(false);
+        appender.start();
+    }
+
+    @Test
+    public void blockedOfferTimesOutIfFull() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(2, waitStrategy);
+            assertTrue(queue.offer(0));
+            assertTrue(queue.offer(1));
+
+            long start = System.nanoTime();
+            assertFalse(waitStrategy.name(), queue.offer(2, 50, TimeUnit.MILLISECONDS));
+            assertTrue(waitStrategy.name(), System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+            assertEquals(2, queue.size());
+        }
+    }
+
+    @Test
+    public void blockedOfferContinuesOnceTheConsumerFreesASlot() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            final RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(2, waitStrategy);
+            assertTrue(queue.offer(0));
+            assertTrue(queue.offer(1));
+            Thread consumer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    queue.poll();
+                }
+            });
+            consumer.start();
+
+            assertTrue(waitStrategy.name(), queue.offer(2, 5, TimeUnit.SECONDS));
+            consumer.join();
+            assertEquals(Integer.valueOf(1), queue.poll());
+            assertEquals(Integer.valueOf(2), queue.poll());
+        }
+    }
+
+    @Test
+    public void timedPollReturnsNullIfEmpty() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(2, waitStrategy);
+            assertNull(waitStrategy.name(), queue.poll(20, TimeUnit.MILLISECONDS));
+            assertTrue(queue.offer(0));
+            assertEquals(Integer.valueOf(0), queue.poll(20, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void waitingIsInterruptible() {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(2, WaitStrategy.PARK);
+        assertTrue(queue.offer(0));
+        assertTrue(queue.offer(1));
+        Thread.currentThread().interrupt();
+        try {
+            queue.put(2);
+            fail();
+        } catch (InterruptedException expected) {
+            assertFalse(Thread.currentThread().isInterrupted());
+        }
+    }
+
+    @Test
+    public void keepsEveryElementOfConcurrentProducersInOrder() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values())
+            this.stress(waitStrategy);
+    }
+
+    private void stress(WaitStrategy waitStrategy) throws Exception {
+        final RingBufferQueue<long[]> queue = new RingBufferQueue<long[]>(STRESS_CAPACITY, waitStrategy);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final long producer = p;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (long i = 0; i < EVENTS_PER_PRODUCER; i++)
+                            queue.put(new long[]{producer, i});
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }, "producer-" + p);
+            thread.setDaemon(true);
+            thread.start();
+            producers.add(thread);
+        }
+
+        long[] next = new long[PRODUCERS];
+        start.countDown();
+        for (int received = 0; received < PRODUCERS * EVENTS_PER_PRODUCER; received++) {
+            long[] element = queue.poll(10, TimeUnit.SECONDS);
+            if (element == null)
+                fail(waitStrategy + ": lost events after " + received + ", producer failure: " + failure.get());
+            int producer = (int) element[0];
+            // a gap is a lost event, a repeated or smaller number a duplicate or reordered one
+            assertEquals(waitStrategy + " producer " + producer, next[producer], element[1]);
+            next[producer]++;
+        }
+        for (Thread producer : producers)
+            producer.join(10000);
+        assertNull(failure.get());
+        assertNull(waitStrategy.name(), queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+}